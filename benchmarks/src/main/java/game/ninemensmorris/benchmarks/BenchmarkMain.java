@@ -0,0 +1,37 @@
+package game.ninemensmorris.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler and writes the results as JSON
+ * (to jmh-result.json unless -rff is given), so that throughput and
+ * allocation rate can be compared between builds. Accepts all the usual
+ * JMH command line options.
+ */
+public class BenchmarkMain {
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+
+		options.parent(commandLineOptions);
+		options.addProfiler(GCProfiler.class);
+
+		if (!commandLineOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+
+		if (!commandLineOptions.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
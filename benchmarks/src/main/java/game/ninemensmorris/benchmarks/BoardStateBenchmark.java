@@ -0,0 +1,123 @@
+package game.ninemensmorris.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+import game.ninemensmorris.Models.MoveEvaluationFunction;
+import game.ninemensmorris.Models.SimpleMoveEvaluationFunction;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardStateBenchmark {
+	@Param({Positions.START, Positions.PLACING, Positions.LATE_PLACING,
+		Positions.MOVING, Positions.MOVING_WITH_MILLS, Positions.MOVING_UNBALANCED})
+	public String position;
+
+	private BoardState boardState;
+	private MoveEvaluationFunction moveEvaluationFunction;
+	private int[] moves;
+	private int[] scores;
+	private int numberOfMoves;
+	private Move[] legacyMoves;
+
+	@Setup
+	public void setUp() {
+		boardState = BoardState.parse(position);
+		moveEvaluationFunction = new SimpleMoveEvaluationFunction();
+		moves = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		scores = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		numberOfMoves = boardState.generateMoves(moves, scores, null);
+
+		List<Move> validMoves = boardState.getValidMoves(null);
+		legacyMoves = validMoves.toArray(new Move[validMoves.size()]);
+	}
+
+	@Benchmark
+	public long makeAndUndoMoves() {
+		long result = 0;
+
+		for (int i = 0; i < numberOfMoves; i++) {
+			boardState.makeMove(moves[i]);
+			result += boardState.getBoardID();
+			boardState.undoMove(moves[i]);
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public long makeAndUndoLegacyMoves() {
+		long result = 0;
+
+		for (Move move : legacyMoves) {
+			boardState.makeMove(move);
+			result += boardState.getBoardID();
+			boardState.undoMove(move);
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int generateMoves() {
+		return boardState.generateMoves(moves, scores, null);
+	}
+
+	@Benchmark
+	public int generateAndScoreMoves() {
+		return boardState.generateMoves(moves, scores, moveEvaluationFunction);
+	}
+
+	@Benchmark
+	public List<Move> getValidMoves() {
+		return boardState.getValidMoves(moveEvaluationFunction);
+	}
+
+	@Benchmark
+	public int doesPieceCompleteMill() {
+		int result = 0;
+
+		for (int position = 0; position < BoardState.NUMBER_OF_POSITIONS; position++) {
+			if (boardState.doesPieceCompleteMill(-1, position, boardState.getCurrentPlayer())) {
+				result++;
+			}
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int evaluateMoves() {
+		int result = 0;
+
+		for (int i = 0; i < numberOfMoves; i++) {
+			result += moveEvaluationFunction.evaluate(boardState, moves[i]);
+		}
+
+		return result;
+	}
+
+	@Benchmark
+	public int evaluateBoard() {
+		return AlphaBetaPruning.evaluateBoard(boardState);
+	}
+}
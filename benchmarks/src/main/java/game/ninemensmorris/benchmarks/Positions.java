@@ -0,0 +1,16 @@
+package game.ninemensmorris.benchmarks;
+
+/**
+ * Benchmark corpus, in the notation of BoardState.parse.
+ */
+final class Positions {
+	static final String START = "........................ W 9 9";
+	static final String PLACING = "....WB..WB.W..B.B.....W. W 5 5";
+	static final String LATE_PLACING = "WB.WB.WB.W.BB..B....WW.. W 2 2";
+	static final String MOVING = "BBW.B.WB.B.W..WWWB...B.W W 0 0";
+	static final String MOVING_WITH_MILLS = "W.B....B.BBB..W..W...WWW W 0 0";
+	static final String MOVING_UNBALANCED = "WWB.BBBW..W.BWW...B.BB.B W 0 0";
+
+	private Positions() {
+	}
+}
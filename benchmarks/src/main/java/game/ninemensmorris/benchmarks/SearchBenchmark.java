@@ -0,0 +1,62 @@
+package game.ninemensmorris.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Fixed depth searches from an empty transposition table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+	private static final int TRANSPOSITION_TABLE_SIZE = 16;
+
+	@Param({Positions.START, Positions.PLACING, Positions.LATE_PLACING,
+		Positions.MOVING, Positions.MOVING_WITH_MILLS, Positions.MOVING_UNBALANCED})
+	public String position;
+
+	@Param({"4", "6"})
+	public int depth;
+
+	@Param({"false", "true"})
+	public boolean canonicalKeys;
+
+	private AlphaBetaPruning solver;
+
+	@Setup
+	public void setUp() {
+		solver = new AlphaBetaPruning(BoardState.parse(position), depth, Integer.MAX_VALUE);
+		solver.setTranspositionTableSize(TRANSPOSITION_TABLE_SIZE);
+		solver.setUseCanonicalKeys(canonicalKeys);
+	}
+
+	@Setup(Level.Invocation)
+	public void clearTranspositionTable() {
+		solver.clearTranspositionTable();
+	}
+
+	@Benchmark
+	public Move searchForBestMove() {
+		return solver.searchForBestMove();
+	}
+}
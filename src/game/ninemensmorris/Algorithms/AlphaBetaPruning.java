@@ -1,51 +1,114 @@
 package game.ninemensmorris.Algorithms;
 
-import java.util.HashMap;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
 
 import game.ninemensmorris.Models.BoardState;
-import game.ninemensmorris.Models.BoardStateValue;
+import game.ninemensmorris.Models.BoardSymmetry;
 import game.ninemensmorris.Models.Move;
 import game.ninemensmorris.Models.MoveEvaluationFunction;
 import game.ninemensmorris.Models.SimpleMoveEvaluationFunction;
 
 public class AlphaBetaPruning {
-	private static final int INFINITY = 1001;
-	private static final int WIN_BOARD_VALUE = 1000;
-	private static final int END_SEARCH = 10000;
+	public enum ParallelMode {
+		LAZY_SMP,
+		YOUNG_BROTHERS_WAIT
+	}
+	
+	public static final int DEFAULT_QUIESCENCE_DEPTH = 2;
+	static final int INFINITY = 1001;
+	static final int WIN_BOARD_VALUE = 1000;
+	static final int END_SEARCH = 10000;
+	private static final int DEFAULT_TRANSPOSITION_TABLE_SIZE = 64;
+	private static final int TRANSPOSITION_TABLE_FILE_MAGIC = 0x4E4D4D54;
+	private static final int TRANSPOSITION_TABLE_FILE_VERSION = 1;
 
 	private BoardState boardState;
 	private int maxDepth;
 	private int maxTime;
-	private long startTime;
-	private Map<Long, BoardStateValue> transpositionTable;
-	private Move currentBestMove;
-	private int currentBestMoveValue;
+	private long maxNodes;
+	private int numberOfThreads;
+	private ParallelMode parallelMode;
+	private final TimeManager timeManager;
+	private volatile boolean pondering;
+	private long startNanoTime;
+	private TranspositionTable transpositionTable;
+	private EndgameDatabase endgameDatabase;
+	private OpeningBook openingBook;
+	private boolean useCanonicalKeys;
+	private boolean usePrincipalVariationSearch;
+	private boolean useMoveOrderingHeuristics;
+	private boolean useLateMoveReductions;
+	private ReductionTable reductionTable;
+	private int aspirationWindow;
+	private int quiescenceDepth;
 	private MoveEvaluationFunction moveEvaluationFunction;
-	private BoardState currentBoard;
-	private boolean doTerminateMove;
+	private Searcher mainSearcher;
+	private List<Searcher> helperSearchers;
+	private volatile boolean stopHelpers;
+	private ForkJoinPool forkJoinPool;
+	private volatile YoungBrothersWaitSearch youngBrothersWaitSearch;
+	private SearchStatistics lastSearchStatistics;
+	private SearchProgressCallback searchProgressCallback;
+	private long searchedNodes;
+	private int lastCompletedDepth;
+	private int lastCompletedValue;
+	private Move lastBestMove;
+	private final Object searchLock;
+	private volatile boolean doTerminateMove;
+	private volatile boolean searchCancelled;
+	private CompletableFuture<SearchResult> runningSearch;
 
 	public AlphaBetaPruning(BoardState boardState, int maxDepth, int maxTime) {
 		this.boardState = boardState;
 		this.maxDepth = maxDepth;
 		this.maxTime = maxTime;
+		this.maxNodes = Long.MAX_VALUE;
+		this.numberOfThreads = 1;
+		this.parallelMode = ParallelMode.LAZY_SMP;
 		this.moveEvaluationFunction = new SimpleMoveEvaluationFunction();
-		this.transpositionTable = new HashMap<Long, BoardStateValue>();
+		this.transpositionTable = new TranspositionTable(DEFAULT_TRANSPOSITION_TABLE_SIZE);
+		this.searchLock = new Object();
 		this.doTerminateMove = false;
+		this.searchCancelled = false;
+		this.usePrincipalVariationSearch = true;
+		this.useMoveOrderingHeuristics = true;
+		this.useLateMoveReductions = true;
+		this.reductionTable = ReductionTable.DEFAULT;
+		this.aspirationWindow = 0;
+		this.quiescenceDepth = DEFAULT_QUIESCENCE_DEPTH;
 		
-		this.currentBoard = null;
-		this.startTime = 0;
-		this.currentBestMove = null;
-		currentBestMoveValue = -INFINITY;
+		this.mainSearcher = new Searcher(0, moveEvaluationFunction);
+		this.helperSearchers = new ArrayList<Searcher>();
+		this.timeManager = new TimeManager();
+		this.searchedNodes = 0;
+		this.lastSearchStatistics = new SearchStatistics(numberOfThreads);
 	}
 	
-	public void setBoardState(BoardState boardState) {
-		this.currentBoard = boardState;
+	/**
+	 * Sets the position of the next search. A termination request that
+	 * arrived after the previous search had already finished is discarded.
+	 */
+	public synchronized void setBoardState(BoardState boardState) {
+		this.boardState = boardState;
+		this.doTerminateMove = false;
 	}
 
 	public BoardState getBoardState() {
-		return currentBoard;
+		return boardState;
 	}
 	
 	public void setMaxDepth(int maxDepth) {
@@ -64,37 +127,262 @@ public class AlphaBetaPruning {
 		return maxTime;
 	}
 	
-	private int getNumberOfAdjacentMoves(int player) {
-		int result = 0;
-
-		for (int i = 0; i < BoardState.NUMBER_OF_POSITIONS; i++) {
-			if (currentBoard.getPositionState(i) == player + 1) {
-				for (int j : BoardState.POSITION_TO_NEIGHBOURS.get(i)) {
-					if (currentBoard.getPositionState(j) == 0) {
-						result++;
-					}
-				}
-			}
-		}
+	public void setMaxNodes(long maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+	
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+	
+	/**
+	 * While pondering, the search ignores its time limit and only ends at
+	 * its maximum depth or when it is terminated.
+	 */
+	public void setPondering(boolean pondering) {
+		this.pondering = pondering;
+	}
+	
+	public boolean isPondering() {
+		return pondering;
+	}
+	
+	/**
+	 * Turns a pondering search into a normal one whose time limit starts now,
+	 * e.g. when the opponent played the predicted move.
+	 */
+	public synchronized void ponderHit() {
+		timeManager.restart();
+		pondering = false;
 		
-		return result;
+		YoungBrothersWaitSearch search = youngBrothersWaitSearch;
+		if (search != null) {
+			search.setDeadline(timeManager.getHardDeadline());
+		}
 	}
 	
-	private int getNumberOfMills(int player) {
-		int result = 0;
+	public void setSearchProgressCallback(SearchProgressCallback searchProgressCallback) {
+		this.searchProgressCallback = searchProgressCallback;
+	}
+	
+	public void setNumberOfThreads(int numberOfThreads) {
+		if (numberOfThreads < 1) {
+			throw new IllegalArgumentException();
+		}
 		
-		millCordsLoop:
-		for (List<Integer> millCords : BoardState.POSSIBLE_MILLS) {
-			for (int i : millCords) {
-				if (currentBoard.getPositionState(i) != player + 1) {
-					continue millCordsLoop;
-				}
+		this.numberOfThreads = numberOfThreads;
+	}
+	
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+	
+	public void setParallelMode(ParallelMode parallelMode) {
+		this.parallelMode = parallelMode;
+	}
+	
+	public ParallelMode getParallelMode() {
+		return parallelMode;
+	}
+	
+	public void setTranspositionTableSize(int sizeInMegabytes) {
+		if (sizeInMegabytes != transpositionTable.getSizeInMegabytes()) {
+			this.transpositionTable = new TranspositionTable(sizeInMegabytes);
+		}
+	}
+	
+	public int getTranspositionTableSize() {
+		return transpositionTable.getSizeInMegabytes();
+	}
+	
+	/**
+	 * Searches with the given table, e.g. one that is kept across games. The
+	 * table has to be keyed in the current key mode.
+	 */
+	public void setTranspositionTable(TranspositionTable transpositionTable) {
+		this.transpositionTable = transpositionTable;
+	}
+	
+	public TranspositionTable getTranspositionTable() {
+		return transpositionTable;
+	}
+	
+	/**
+	 * Writes a snapshot of the transposition table together with its key
+	 * mode, to be read back by {@link #loadTranspositionTable(File)} after a
+	 * restart.
+	 */
+	public void saveTranspositionTable(File file) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			output.writeInt(TRANSPOSITION_TABLE_FILE_MAGIC);
+			output.writeInt(TRANSPOSITION_TABLE_FILE_VERSION);
+			output.writeBoolean(useCanonicalKeys);
+			transpositionTable.save(output);
+		}
+	}
+	
+	/**
+	 * Replaces the transposition table by a snapshot, including its size and
+	 * key mode.
+	 */
+	public void loadTranspositionTable(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (input.readInt() != TRANSPOSITION_TABLE_FILE_MAGIC || input.readInt() != TRANSPOSITION_TABLE_FILE_VERSION) {
+				throw new IOException(file + " is not a transposition table");
 			}
 			
-			result++;
+			boolean canonicalKeys = input.readBoolean();
+			TranspositionTable table = TranspositionTable.load(input);
+			
+			this.useCanonicalKeys = canonicalKeys;
+			this.transpositionTable = table;
+		}
+	}
+	
+	/**
+	 * Sets the solved endgame positions used instead of searching the moving
+	 * phase, or null to search it.
+	 */
+	public void setEndgameDatabase(EndgameDatabase endgameDatabase) {
+		this.endgameDatabase = endgameDatabase;
+	}
+	
+	public EndgameDatabase getEndgameDatabase() {
+		return endgameDatabase;
+	}
+	
+	/**
+	 * Sets the book whose moves are played without searching, or null to
+	 * always search.
+	 */
+	public void setOpeningBook(OpeningBook openingBook) {
+		this.openingBook = openingBook;
+	}
+	
+	public OpeningBook getOpeningBook() {
+		return openingBook;
+	}
+	
+	/**
+	 * Keys the transposition table by the canonical form of a position, so
+	 * that positions that are equal up to a board symmetry share an entry.
+	 * Best moves are stored in the frame of the canonical form. Changing the
+	 * key mode clears the transposition table.
+	 */
+	public void setUseCanonicalKeys(boolean useCanonicalKeys) {
+		if (useCanonicalKeys != this.useCanonicalKeys) {
+			this.useCanonicalKeys = useCanonicalKeys;
+			transpositionTable.clear();
+		}
+	}
+	
+	public boolean isUsingCanonicalKeys() {
+		return useCanonicalKeys;
+	}
+	
+	/**
+	 * Searches all moves but the first of a node with a null window, and only
+	 * searches a move again with the full window if it fails high. Only used
+	 * by the lazy SMP search.
+	 */
+	public void setUsePrincipalVariationSearch(boolean usePrincipalVariationSearch) {
+		this.usePrincipalVariationSearch = usePrincipalVariationSearch;
+	}
+	
+	public boolean isUsingPrincipalVariationSearch() {
+		return usePrincipalVariationSearch;
+	}
+	
+	/**
+	 * Orders the moves of every node by the hash move, killer moves and the
+	 * history heuristic in addition to the static move evaluation (see
+	 * {@link MoveOrdering}). Only used by the lazy SMP search.
+	 */
+	public void setUseMoveOrderingHeuristics(boolean useMoveOrderingHeuristics) {
+		this.useMoveOrderingHeuristics = useMoveOrderingHeuristics;
+	}
+	
+	public boolean isUsingMoveOrderingHeuristics() {
+		return useMoveOrderingHeuristics;
+	}
+	
+	/**
+	 * Searches quiet moves that come late in the move order with a reduced
+	 * depth and a null window first, and only searches them again with the
+	 * full depth if they beat alpha. The root and the hash move are never
+	 * reduced. Only used by the lazy SMP search.
+	 */
+	public void setUseLateMoveReductions(boolean useLateMoveReductions) {
+		this.useLateMoveReductions = useLateMoveReductions;
+	}
+	
+	public boolean isUsingLateMoveReductions() {
+		return useLateMoveReductions;
+	}
+	
+	public void setReductionTable(ReductionTable reductionTable) {
+		if (reductionTable == null) {
+			throw new IllegalArgumentException("reduction table must not be null");
 		}
 		
-		return result;
+		this.reductionTable = reductionTable;
+	}
+	
+	public ReductionTable getReductionTable() {
+		return reductionTable;
+	}
+	
+	/**
+	 * Starts every iteration but the first with a window of the given size
+	 * around the value of the previous one, widening it on a fail low or high,
+	 * or 0 to always search with the full window. Only used by the lazy SMP
+	 * search.
+	 */
+	public void setAspirationWindow(int aspirationWindow) {
+		if (aspirationWindow < 0) {
+			throw new IllegalArgumentException("aspiration window must not be negative: " + aspirationWindow);
+		}
+		
+		this.aspirationWindow = aspirationWindow;
+	}
+	
+	public int getAspirationWindow() {
+		return aspirationWindow;
+	}
+	
+	/**
+	 * Continues the search at the leaves for up to the given number of plies
+	 * over the moves that close a mill, so that a leaf is not evaluated in the
+	 * middle of an exchange of pieces. Every side may instead stop with the
+	 * static evaluation (stand pat). 0 evaluates the leaves directly. Only
+	 * used by the lazy SMP search.
+	 */
+	public void setQuiescenceDepth(int quiescenceDepth) {
+		if (quiescenceDepth < 0) {
+			throw new IllegalArgumentException("quiescence depth must not be negative: " + quiescenceDepth);
+		}
+		
+		this.quiescenceDepth = quiescenceDepth;
+	}
+	
+	public int getQuiescenceDepth() {
+		return quiescenceDepth;
+	}
+	
+	private int getKeySymmetry(BoardState board) {
+		return useCanonicalKeys ? board.getCanonicalSymmetry() : BoardSymmetry.IDENTITY;
+	}
+	
+	public long getSearchedNodes() {
+		return searchedNodes;
+	}
+	
+	public void clearTranspositionTable() {
+		transpositionTable.clear();
+	}
+	
+	public SearchStatistics getLastSearchStatistics() {
+		return lastSearchStatistics;
 	}
 	
 //	private int getNumberOfFormableMills(int player) {
@@ -132,78 +420,270 @@ public class AlphaBetaPruning {
 //		return result;
 //	}
 	
-	private int evaluateCurrentBoard() {
+	public static int evaluateBoard(BoardState board) {
 		int result = 0;
 		
-		result += 10 * (currentBoard.getRemainingPiecesOfCurrentPlayer() - currentBoard.getRemainingPiecesOfOtherPlayer());
-		result += 2 * (getNumberOfAdjacentMoves(currentBoard.getCurrentPlayer()) - getNumberOfAdjacentMoves(currentBoard.getOtherPlayer()));
-		result += 8 * (getNumberOfMills(currentBoard.getCurrentPlayer()) - getNumberOfMills(currentBoard.getOtherPlayer()));
-		//result += 2 * (getNumberOfFormableMills(currentBoard.getCurrentPlayer()) - getNumberOfFormableMills(currentBoard.getOtherPlayer()));
+		result += 10 * (board.getRemainingPiecesOfCurrentPlayer() - board.getRemainingPiecesOfOtherPlayer());
+		result += 2 * (board.getNumberOfAdjacentMoves(board.getCurrentPlayer()) - board.getNumberOfAdjacentMoves(board.getOtherPlayer()));
+		result += 8 * (board.getNumberOfMills(board.getCurrentPlayer()) - board.getNumberOfMills(board.getOtherPlayer()));
+		//result += 2 * (getNumberOfFormableMills(board.getCurrentPlayer()) - getNumberOfFormableMills(board.getOtherPlayer()));
 		
 		return result;
 	}
-	int hits = 0;
-	private int alphaBetaPrunningSearch(int alpha, int beta, int currentDepth, int remainingDepth) {
-		if ((System.currentTimeMillis() - startTime > maxTime && currentBestMove != null) || doTerminateMove) {
-			doTerminateMove = false;
-			return END_SEARCH;
+	
+	/**
+	 * Converts an endgame database value into a search value, which prefers
+	 * shorter wins and longer losses but stays above every evaluation.
+	 */
+	static int getEndgameSearchValue(int endgameValue) {
+		if (endgameValue == EndgameDatabase.DRAW) {
+			return 0;
 		}
-
-		BoardStateValue boardComputedValue = transpositionTable.get(currentBoard.getBoardID());
-		if (boardComputedValue != null && boardComputedValue.getRemainingDepth() >= remainingDepth) { hits++;
-			if (boardComputedValue.hasBeenCut()) {
-				alpha = Math.max(alpha, boardComputedValue.getValue());
+		
+		int value = Math.max(WIN_BOARD_VALUE - EndgameDatabase.getDistance(endgameValue), WIN_BOARD_VALUE / 2);
+		
+		return EndgameDatabase.isWin(endgameValue) ? value : -value;
+	}
+	
+	/**
+	 * Search state owned by a single thread. Helper searchers (lazy SMP) run the
+	 * same iterative deepening on their own board copy with shifted depths and
+	 * randomized move order ties, and only communicate with the main searcher
+	 * through the shared transposition table.
+	 */
+	private final class Searcher implements Runnable {
+		private final boolean isHelper;
+		private final int depthOffset;
+		private final MoveEvaluationFunction moveEvaluationFunction;
+		private final MoveOrdering moveOrdering;
+		private BoardState currentBoard;
+		private MovePicker[] movePickersPerDepth;
+		private int currentBestMove;
+		private int currentBestMoveValue;
+		private long searchedNodes;
+		private long reducedSearches;
+		private long reSearches;
+		
+		public Searcher(int id, MoveEvaluationFunction moveEvaluationFunction) {
+			this.isHelper = id != 0;
+			this.depthOffset = id % 2;
+			this.moveEvaluationFunction = moveEvaluationFunction;
+			this.moveOrdering = new MoveOrdering(moveEvaluationFunction);
+			this.movePickersPerDepth = new MovePicker[0];
+			this.currentBestMove = Move.NO_MOVE;
+			this.currentBestMoveValue = -INFINITY;
+		}
+		
+		private int evaluateCurrentBoard() {
+			return evaluateBoard(currentBoard);
+		}
+		
+		private boolean isSearchStopped() {
+			if (isHelper) {
+				return stopHelpers;
 			}
 			
-			if (boardComputedValue.couldHaveBeenCutDeeper()) {
-				beta = Math.min(beta, boardComputedValue.getValue());
+			// The flags are only cleared before a search starts, so every node sees them.
+			return doTerminateMove || searchCancelled || (currentBestMove != Move.NO_MOVE && (searchedNodes >= maxNodes
+					|| ((searchedNodes & (TimeManager.POLL_INTERVAL - 1)) == 0 && !pondering && timeManager.isHardLimitReached())));
+		}
+		
+		private int alphaBetaPrunningSearch(int alpha, int beta, int currentDepth, int remainingDepth) {
+			if (isSearchStopped()) {
+				return END_SEARCH;
 			}
 			
-			if (!(boardComputedValue.couldHaveBeenCutDeeper() || boardComputedValue.hasBeenCut())
-					|| alpha >= beta) {
-				if (currentDepth == 0) {
-					currentBestMove = boardComputedValue.getFoundBestMove();
-					currentBestMoveValue = boardComputedValue.getValue();
+			searchedNodes++;
+			
+			if (currentDepth > 0 && endgameDatabase != null) {
+				int endgameValue = endgameDatabase.probe(currentBoard);
+				
+				if (endgameValue != EndgameDatabase.UNKNOWN) {
+					return getEndgameSearchValue(endgameValue);
 				}
-	
-				return boardComputedValue.getValue();
 			}
-		}
 
-		List<Move> validMoves = currentBoard.getValidMoves(moveEvaluationFunction);
-		if (currentBoard.getRemainingPiecesOfCurrentPlayer() < 3 || validMoves.isEmpty()) {
-			return -WIN_BOARD_VALUE;
+			int keySymmetry = getKeySymmetry(currentBoard);
+			long boardID = currentBoard.getBoardID(keySymmetry);
+			long boardComputedValue = transpositionTable.probe(boardID);
+			int hashMove = Move.NO_MOVE;
+			if (boardComputedValue != TranspositionTable.NO_ENTRY) {
+				hashMove = BoardSymmetry.applyToMove(BoardSymmetry.getInverse(keySymmetry),
+						TranspositionTable.getBestMove(boardComputedValue));
+			}
+			
+			if (boardComputedValue != TranspositionTable.NO_ENTRY
+					&& TranspositionTable.getDepth(boardComputedValue) >= remainingDepth) {
+				int value = TranspositionTable.getValue(boardComputedValue);
+				int bound = TranspositionTable.getBound(boardComputedValue);
+				
+				if (bound == TranspositionTable.LOWER_BOUND) {
+					alpha = Math.max(alpha, value);
+				}
+				
+				if (bound == TranspositionTable.UPPER_BOUND) {
+					beta = Math.min(beta, value);
+				}
+				
+				if (bound == TranspositionTable.EXACT || alpha >= beta) {
+					if (currentDepth == 0) {
+						if (!currentBoard.isMoveLegal(hashMove)) {
+							alpha = -INFINITY;
+							beta = INFINITY;
+						} else {
+							currentBestMove = hashMove;
+							currentBestMoveValue = value;
+							
+							return value;
+						}
+					} else {
+						return value;
+					}
+				}
+			}
+
+			if (currentBoard.hasCurrentPlayerLost()) {
+				return -WIN_BOARD_VALUE;
+			}
+			
+			if (remainingDepth == 0) {
+				return quiescenceDepth > 0
+						? quiescenceSearch(alpha, beta, currentDepth, quiescenceDepth)
+						: evaluateCurrentBoard();
+			} else {
+				int nodeBestMove = Move.NO_MOVE;
+				int nodeBestValue = -INFINITY;
+				int originalAlpha = alpha;
+				
+				MovePicker movePicker = movePickersPerDepth[currentDepth];
+				if (useMoveOrderingHeuristics) {
+					moveOrdering.setPly(currentDepth);
+					movePicker.reset(currentBoard, moveOrdering, hashMove);
+				} else {
+					movePicker.reset(currentBoard, moveEvaluationFunction, Move.NO_MOVE);
+				}
+
+				int move;
+				for (int i = 0; (move = movePicker.next()) != Move.NO_MOVE; i++) {
+					currentBoard.makeMove(move);
+					
+					int reduction = 0;
+					if (useLateMoveReductions && currentDepth > 0 && Move.unpackPositionOfTakenPiece(move) == -1) {
+						reduction = reductionTable.getReduction(remainingDepth, i + 1);
+					}
+					
+					int value;
+					if (i == 0) {
+						value = -alphaBetaPrunningSearch(-beta, -alpha, currentDepth + 1, remainingDepth -1);
+					} else {
+						value = alpha + 1;
+						
+						if (reduction > 0) {
+							reducedSearches++;
+							value = -alphaBetaPrunningSearch(-alpha - 1, -alpha, currentDepth + 1, remainingDepth - 1 - reduction);
+							
+							if (value > alpha) {
+								reSearches++;
+							}
+						}
+						
+						if (value > alpha && usePrincipalVariationSearch) {
+							value = -alphaBetaPrunningSearch(-alpha - 1, -alpha, currentDepth + 1, remainingDepth - 1);
+						}
+						
+						if (value > alpha && (value < beta || !usePrincipalVariationSearch)) {
+							value = -alphaBetaPrunningSearch(-beta, -alpha, currentDepth + 1, remainingDepth - 1);
+						}
+					}
+
+					currentBoard.undoMove(move);
+				
+					if (Math.abs(value) == END_SEARCH) {
+						return END_SEARCH;
+					}
+
+					if (value > nodeBestValue) {
+						nodeBestValue = value;
+						nodeBestMove = move;
+					}
+
+					if (value > alpha) {
+						alpha = value;
+						
+						if (currentDepth == 0) {
+							currentBestMove = move;
+							currentBestMoveValue = alpha;
+						}
+					}
+					
+					if (alpha >= beta) {
+						if (useMoveOrderingHeuristics) {
+							moveOrdering.onCutoff(currentBoard, move, currentDepth, remainingDepth);
+						}
+						
+						break;
+					}
+				}
+				
+				int bound = TranspositionTable.EXACT;
+				if (alpha >= beta) {
+					bound = TranspositionTable.LOWER_BOUND;
+				} else if (nodeBestValue <= originalAlpha) {
+					bound = TranspositionTable.UPPER_BOUND;
+				}
+				
+				transpositionTable.store(boardID, nodeBestValue, remainingDepth, bound,
+						BoardSymmetry.applyToMove(keySymmetry, nodeBestMove));
+				
+				return nodeBestValue;
+			}
 		}
 		
-		if (remainingDepth == 0) {
-			return evaluateCurrentBoard();
-		} else {
-			Move nodeBestMove = null;
-			int nodeBestValue = -INFINITY;
-
-			for (Move move : validMoves) {
+		/**
+		 * Searches a leaf whose node was already counted and is not lost. Does
+		 * not use the transposition table, whose depths cannot tell quiescence
+		 * results apart from the static evaluation.
+		 */
+		private int quiescenceSearch(int alpha, int beta, int currentDepth, int remainingQuiescenceDepth) {
+			int standPatValue = evaluateCurrentBoard();
+			
+			if (remainingQuiescenceDepth == 0 || standPatValue >= beta) {
+				return standPatValue;
+			}
+			
+			int bestValue = standPatValue;
+			alpha = Math.max(alpha, standPatValue);
+			
+			MovePicker movePicker = movePickersPerDepth[currentDepth];
+			movePicker.resetForQuiescence(currentBoard, moveEvaluationFunction);
+			
+			int move;
+			while ((move = movePicker.next()) != Move.NO_MOVE) {
 				currentBoard.makeMove(move);
 				
-				int value = -alphaBetaPrunningSearch(-beta, -alpha, currentDepth + 1, remainingDepth -1);
-
+				int value;
+				if (isSearchStopped()) {
+					value = END_SEARCH;
+				} else {
+					searchedNodes++;
+					
+					value = currentBoard.hasCurrentPlayerLost()
+							? WIN_BOARD_VALUE
+							: -quiescenceSearch(-beta, -alpha, currentDepth + 1, remainingQuiescenceDepth - 1);
+				}
+				
 				currentBoard.undoMove(move);
-			
+				
 				if (Math.abs(value) == END_SEARCH) {
 					return END_SEARCH;
 				}
-
-				if (value > nodeBestValue) {
-					nodeBestValue = value;
-					nodeBestMove = move;
+				
+				if (value > bestValue) {
+					bestValue = value;
 				}
-
+				
 				if (value > alpha) {
 					alpha = value;
-					
-					if (currentDepth == 0) {
-						currentBestMove = move;
-						currentBestMoveValue = alpha;
-					}
 				}
 				
 				if (alpha >= beta) {
@@ -211,38 +691,307 @@ public class AlphaBetaPruning {
 				}
 			}
 			
-			transpositionTable.put(currentBoard.getBoardID(), new BoardStateValue(nodeBestValue, remainingDepth, nodeBestMove, alpha >= beta, nodeBestValue < alpha));
+			return bestValue;
+		}
+		
+		private int aspirationSearch(int expectedValue, int depth) {
+			int delta = aspirationWindow;
+			int alpha = Math.max(expectedValue - delta, -INFINITY);
+			int beta = Math.min(expectedValue + delta, INFINITY);
 			
-			return nodeBestValue;
+			while (true) {
+				int value = alphaBetaPrunningSearch(alpha, beta, 0, depth);
+				
+				if (Math.abs(value) == END_SEARCH || (value > alpha && value < beta)) {
+					return value;
+				}
+				
+				delta *= 2;
+				
+				if (value <= alpha) {
+					alpha = Math.max(value - delta, -INFINITY);
+				} else {
+					beta = Math.min(value + delta, INFINITY);
+				}
+			}
 		}
-	}
-	
-	public Move searchForBestMove() {
-		currentBestMove = null;
-		startTime = System.currentTimeMillis();
-		currentBoard = new BoardState(boardState);
-		currentBestMoveValue = -INFINITY;
-		Move prevBestMove = currentBestMove;
-		int prevBestMoveValue = currentBestMoveValue;
 		
-
-		for (int depth = Math.min(2, maxDepth); depth <= maxDepth; depth += 2) {
-			int value = alphaBetaPrunningSearch(-INFINITY, INFINITY, 0, depth);
+		private void ensureMoveBuffers(int maxDepth) {
+			if (movePickersPerDepth.length <= maxDepth) {
+				movePickersPerDepth = new MovePicker[maxDepth + 1];
+				
+				for (int i = 0; i <= maxDepth; i++) {
+					movePickersPerDepth[i] = new MovePicker();
+				}
+			}
+		}
+		
+		public void prepare() {
+			ensureMoveBuffers(maxDepth + quiescenceDepth);
+			moveOrdering.newSearch(maxDepth);
+			currentBoard = new BoardState(boardState);
+			currentBestMove = Move.NO_MOVE;
+			currentBestMoveValue = -INFINITY;
+			searchedNodes = 0;
+			reducedSearches = 0;
+			reSearches = 0;
+		}
+		
+		@Override
+		public void run() {
+			int prevBestMove = currentBestMove;
+			int prevBestMoveValue = currentBestMoveValue;
 			
-			if (Math.abs(value) == END_SEARCH) {
-				if (currentBestMoveValue <= prevBestMoveValue) {
-					currentBestMove = prevBestMove;
-					currentBestMoveValue = prevBestMoveValue;
+			for (int depth = Math.min(2 + depthOffset, maxDepth); depth <= maxDepth; depth += 2) {
+				int value = prevBestMove == Move.NO_MOVE || aspirationWindow == 0
+						? alphaBetaPrunningSearch(-INFINITY, INFINITY, 0, depth)
+						: aspirationSearch(prevBestMoveValue, depth);
+				
+				if (Math.abs(value) == END_SEARCH) {
+					if (currentBestMoveValue <= prevBestMoveValue) {
+						currentBestMove = prevBestMove;
+						currentBestMoveValue = prevBestMoveValue;
+					}
+					
+					break;
 				}
 				
+				prevBestMove = currentBestMove;
+				prevBestMoveValue = value;
+				
+				if (!isHelper) {
+					onDepthCompleted(depth, value, searchedNodes, currentBestMove);
+					timeManager.onIterationCompleted(currentBestMove);
+					
+					if (!pondering && !timeManager.shouldStartIteration()) {
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Breaks ties between equally valued moves pseudo-randomly, so that helper
+	 * searchers explore the tree in a different order than the main searcher.
+	 */
+	private static final class TieBreakingMoveEvaluationFunction implements MoveEvaluationFunction {
+		private static final int TIE_BREAKING_RANGE = 4;
+		
+		private final MoveEvaluationFunction evaluationFunction;
+		private long seed;
+		
+		public TieBreakingMoveEvaluationFunction(MoveEvaluationFunction evaluationFunction, long seed) {
+			this.evaluationFunction = evaluationFunction;
+			this.seed = seed;
+		}
+		
+		private int nextTieBreaker() {
+			seed ^= seed << 13;
+			seed ^= seed >>> 7;
+			seed ^= seed << 17;
+			
+			return (int) (seed >>> 62) % TIE_BREAKING_RANGE;
+		}
+		
+		@Override
+		public int evaluate(BoardState boardState, Move move) {
+			return evaluationFunction.evaluate(boardState, move) * TIE_BREAKING_RANGE + nextTieBreaker();
+		}
+		
+		@Override
+		public int evaluate(BoardState boardState, int packedMove) {
+			return evaluationFunction.evaluate(boardState, packedMove) * TIE_BREAKING_RANGE + nextTieBreaker();
+		}
+	}
+	
+	private void onDepthCompleted(int depth, int value, long nodes, int bestMove) {
+		long time = System.nanoTime() - startNanoTime;
+		
+		lastSearchStatistics.addCompletedDepth(depth, time, nodes);
+		lastCompletedDepth = depth;
+		lastCompletedValue = value;
+		
+		SearchProgressCallback callback = searchProgressCallback;
+		if (callback != null) {
+			callback.onDepthCompleted(depth, value, nodes, time, getPrincipalVariation(depth, bestMove));
+		}
+	}
+	
+	// The root entry may have been replaced during the search, so the best move is not taken from it.
+	private List<Move> getPrincipalVariation(int maxLength, int bestMove) {
+		List<Move> result = getPrincipalVariation(maxLength);
+		
+		if (bestMove != Move.NO_MOVE && (result.isEmpty() || result.get(0).toPackedMove() != bestMove)) {
+			result.clear();
+			result.add(Move.unpack(bestMove));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Follows the best moves stored in the transposition table from the
+	 * searched position, as far as they are legal and do not repeat a position.
+	 */
+	public List<Move> getPrincipalVariation(int maxLength) {
+		List<Move> result = new ArrayList<Move>();
+		List<Long> visitedBoardIDs = new ArrayList<Long>();
+		BoardState board = new BoardState(boardState);
+		
+		while (result.size() < maxLength && !visitedBoardIDs.contains(board.getBoardID())) {
+			visitedBoardIDs.add(board.getBoardID());
+			
+			int keySymmetry = getKeySymmetry(board);
+			long entry = transpositionTable.probe(board.getBoardID(keySymmetry));
+			if (entry == TranspositionTable.NO_ENTRY) {
+				break;
+			}
+			
+			int move = BoardSymmetry.applyToMove(BoardSymmetry.getInverse(keySymmetry),
+					TranspositionTable.getBestMove(entry));
+			if (move == Move.NO_MOVE || !board.isMoveLegal(move)) {
 				break;
 			}
 			
-			prevBestMove = currentBestMove;
-			prevBestMoveValue = value;
+			result.add(Move.unpack(move));
+			board.makeMove(move);
+		}
+		
+		return result;
+	}
+	
+	private void ensureHelperSearchers() {
+		while (helperSearchers.size() < numberOfThreads - 1) {
+			int id = helperSearchers.size() + 1;
+			
+			helperSearchers.add(new Searcher(id,
+					new TieBreakingMoveEvaluationFunction(moveEvaluationFunction, 0x9E3779B97F4A7C15L * id)));
+		}
+	}
+	
+	/**
+	 * Searches the position set with {@link #setBoardState(BoardState)} and
+	 * returns the best move, or null if it has no moves. Waits for a search
+	 * that is still running on another thread to end first.
+	 */
+	public Move searchForBestMove() {
+		synchronized (searchLock) {
+			searchCancelled = false;
+			lastBestMove = search();
+			
+			return lastBestMove;
+		}
+	}
+	
+	/**
+	 * Returns the best move of the last search with the value and depth of
+	 * its last completed iteration and its principal variation. Only valid
+	 * until the next search starts.
+	 */
+	public SearchResult getLastSearchResult() {
+		return new SearchResult(lastBestMove, lastCompletedValue, lastCompletedDepth,
+				getPrincipalVariation(lastCompletedDepth, lastBestMove == null ? Move.NO_MOVE : lastBestMove.toPackedMove()),
+				searchedNodes);
+	}
+	
+	/**
+	 * Searches the given position on the given executor. Cancelling the
+	 * returned future abandons the search: it stops within one node, without
+	 * a result, and frees the solver and the threads of its helpers for the
+	 * next search. Searches of the same solver run one after the other, so a
+	 * search started right after cancelling another one waits for it to stop.
+	 * If the executor rejects the search, e.g. a full {@link SearchExecutor},
+	 * the future fails with the RejectedExecutionException.
+	 */
+	public CompletableFuture<SearchResult> searchAsync(final BoardState boardState, Executor executor) {
+		final BoardState position = new BoardState(boardState);
+		final CompletableFuture<SearchResult> result = new CompletableFuture<SearchResult>();
+		
+		result.whenComplete(new BiConsumer<SearchResult, Throwable>() {
+			@Override
+			public void accept(SearchResult searchResult, Throwable throwable) {
+				if (result.isCancelled()) {
+					cancelSearch(result);
+				}
+			}
+		});
+		
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (searchLock) {
+						synchronized (AlphaBetaPruning.this) {
+							if (result.isDone()) {
+								return;
+							}
+							
+							AlphaBetaPruning.this.boardState = position;
+							doTerminateMove = false;
+							searchCancelled = false;
+							runningSearch = result;
+						}
+						
+						try {
+							lastBestMove = search();
+							result.complete(getLastSearchResult());
+						} catch (Throwable throwable) {
+							result.completeExceptionally(throwable);
+						} finally {
+							synchronized (AlphaBetaPruning.this) {
+								runningSearch = null;
+							}
+						}
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			result.completeExceptionally(e);
+		}
+		
+		return result;
+	}
+	
+	private synchronized void cancelSearch(CompletableFuture<SearchResult> search) {
+		if (runningSearch == search) {
+			searchCancelled = true;
+			
+			YoungBrothersWaitSearch youngBrothersWait = youngBrothersWaitSearch;
+			if (youngBrothersWait != null) {
+				youngBrothersWait.stop();
+			}
+		}
+	}
+	
+	private Move search() {
+		lastCompletedDepth = 0;
+		lastCompletedValue = 0;
+		timeManager.start(maxTime);
+		startNanoTime = System.nanoTime();
+		lastSearchStatistics = new SearchStatistics(numberOfThreads);
+		transpositionTable.newSearch();
+		
+		if (openingBook != null) {
+			int bookMove = openingBook.getMove(boardState);
+			
+			if (boardState.isMoveLegal(bookMove)) {
+				searchedNodes = 0;
+				onDepthCompleted(openingBook.getDepth(boardState), openingBook.getValue(boardState), 0, bookMove);
+				
+				return Move.unpack(bookMove);
+			}
+		}
+		
+		int currentBestMove;
+		
+		if (parallelMode == ParallelMode.YOUNG_BROTHERS_WAIT) {
+			currentBestMove = searchYoungBrothersWait();
+		} else {
+			currentBestMove = searchLazySmp();
 		}
 
-		return currentBestMove;
+		return currentBestMove == Move.NO_MOVE ? null : Move.unpack(currentBestMove);
 		
 //		List<Move> moves = boardState.getValidMoves(moveEvaluationFunction);
 //		Random random = new Random();
@@ -250,7 +999,101 @@ public class AlphaBetaPruning {
 //		return moves.get(random.nextInt(moves.size()));
 	}
 	
+	private int searchLazySmp() {
+		mainSearcher.prepare();
+		
+		List<Thread> helperThreads = new ArrayList<Thread>();
+		
+		if (numberOfThreads > 1) {
+			ensureHelperSearchers();
+			stopHelpers = false;
+			
+			for (int i = 0; i < numberOfThreads - 1; i++) {
+				Searcher helper = helperSearchers.get(i);
+				helper.prepare();
+				
+				Thread helperThread = new Thread(helper, "AlphaBetaPruning-helper-" + (i + 1));
+				helperThread.setDaemon(true);
+				helperThread.start();
+				helperThreads.add(helperThread);
+			}
+		}
+		
+		mainSearcher.run();
+		
+		stopHelpers = true;
+		searchedNodes = mainSearcher.searchedNodes;
+		lastSearchStatistics.addReductions(mainSearcher.reducedSearches, mainSearcher.reSearches);
+		
+		for (int i = 0; i < helperThreads.size(); i++) {
+			try {
+				helperThreads.get(i).join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			
+			searchedNodes += helperSearchers.get(i).searchedNodes;
+			lastSearchStatistics.addReductions(helperSearchers.get(i).reducedSearches, helperSearchers.get(i).reSearches);
+		}
+		
+		return mainSearcher.currentBestMove;
+	}
+	
+	private int searchYoungBrothersWait() {
+		if (forkJoinPool == null || forkJoinPool.getParallelism() != numberOfThreads) {
+			if (forkJoinPool != null) {
+				forkJoinPool.shutdown();
+			}
+			
+			forkJoinPool = new ForkJoinPool(numberOfThreads);
+		}
+		
+		YoungBrothersWaitSearch search = new YoungBrothersWaitSearch(forkJoinPool,
+				moveEvaluationFunction, endgameDatabase, YoungBrothersWaitSearch.DEFAULT_MIN_SPLIT_DEPTH);
+		youngBrothersWaitSearch = search;
+		
+		// A stop request that arrived before the search was published.
+		if (doTerminateMove || searchCancelled) {
+			search.stop();
+		}
+		
+		int currentBestMove = Move.NO_MOVE;
+		
+		for (int depth = Math.min(2, maxDepth); depth <= maxDepth; depth += 2) {
+			// As in the serial search, the first iteration always completes.
+			search.setMaxNodes(currentBestMove == Move.NO_MOVE ? Long.MAX_VALUE : maxNodes);
+			synchronized (this) {
+				search.setDeadline(currentBestMove == Move.NO_MOVE || pondering
+						? YoungBrothersWaitSearch.NO_DEADLINE : timeManager.getHardDeadline());
+			}
+			
+			int value = search.search(boardState, depth);
+			
+			if (Math.abs(value) == END_SEARCH) {
+				break;
+			}
+			
+			currentBestMove = search.getBestMove();
+			onDepthCompleted(depth, value, search.getSearchedNodes(), currentBestMove);
+			timeManager.onIterationCompleted(currentBestMove);
+			
+			if (!pondering && !timeManager.shouldStartIteration()) {
+				break;
+			}
+		}
+		
+		youngBrothersWaitSearch = null;
+		searchedNodes = search.getSearchedNodes();
+		
+		return currentBestMove;
+	}
+	
 	public synchronized void terminateSearch() {
 		doTerminateMove = true;
+		
+		YoungBrothersWaitSearch search = youngBrothersWaitSearch;
+		if (search != null) {
+			search.stop();
+		}
 	}
 }
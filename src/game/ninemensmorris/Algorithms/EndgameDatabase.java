@@ -0,0 +1,360 @@
+package game.ninemensmorris.Algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.BoardSymmetry;
+
+/**
+ * Solved positions of the moving phase, in which both players have put all
+ * their pieces on the board. Positions are split into subspaces by the number
+ * of pieces of the player to move and of the other player, and every subspace
+ * is stored in its own file (see game.ninemensmorris.Tools.EndgameGenerator).
+ *
+ * Values are seen from the player to move: {@link #DRAW}, a positive value
+ * for a win or a negative value for a loss, whose absolute value is one more
+ * than the number of plies until the losing player is to move in a lost
+ * position. A position that is already lost therefore has the value -1.
+ *
+ * Only one position of every class of positions that are equal up to a board
+ * symmetry is stored. A file starts with a table that maps every placement of
+ * the pieces of the player to move to the index of its symmetry class and the
+ * symmetry that maps it to the representative of the class. It is followed by
+ * the values of all placements of the other player's pieces around every
+ * representative. The files are memory mapped, so they take almost no heap
+ * and are shared through the page cache by all processes that use them.
+ */
+public final class EndgameDatabase {
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+	public static final int DRAW = 0;
+	public static final int MIN_PIECES = 3;
+	public static final int MAX_PIECES = BoardState.NUMBER_OF_STARTING_PIECES;
+	
+	private static final int FILE_MAGIC = 0x4E4D4D45;
+	private static final int FILE_VERSION = 2;
+	private static final int FILE_HEADER_SIZE = 32;
+	private static final int SYMMETRY_BITS = 4;
+	private static final int SYMMETRY_MASK = (1 << SYMMETRY_BITS) - 1;
+	private static final int IO_BUFFER_SIZE = 1 << 20;
+	
+	private static final long[][] binomials;
+	
+	static {
+		binomials = new long[BoardState.NUMBER_OF_POSITIONS + 1][MAX_PIECES + 1];
+		
+		for (int n = 0; n <= BoardState.NUMBER_OF_POSITIONS; n++) {
+			binomials[n][0] = 1;
+			
+			for (int k = 1; k <= MAX_PIECES && k <= n; k++) {
+				binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+			}
+		}
+	}
+	
+	private static final class Subspace {
+		private final MappedByteBuffer buffer;
+		private final long otherPlacements;
+		private final int valuesOffset;
+		
+		public Subspace(MappedByteBuffer buffer, long otherPlacements, int valuesOffset) {
+			this.buffer = buffer;
+			this.otherPlacements = otherPlacements;
+			this.valuesOffset = valuesOffset;
+		}
+	}
+	
+	private final Subspace[][] subspaces;
+	
+	public EndgameDatabase() {
+		this.subspaces = new Subspace[MAX_PIECES + 1][MAX_PIECES + 1];
+	}
+	
+	/**
+	 * Maps all subspace files found in the given directory.
+	 */
+	public static EndgameDatabase open(File directory) throws IOException {
+		EndgameDatabase result = new EndgameDatabase();
+		
+		for (int ownPieces = MIN_PIECES; ownPieces <= MAX_PIECES; ownPieces++) {
+			for (int otherPieces = MIN_PIECES; otherPieces <= MAX_PIECES; otherPieces++) {
+				File file = new File(directory, getFileName(ownPieces, otherPieces));
+				
+				if (file.isFile()) {
+					result.addSubspace(ownPieces, otherPieces, file);
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	public void addSubspace(int ownPieces, int otherPieces, File file) throws IOException {
+		long ownPlacements = binomials[BoardState.NUMBER_OF_POSITIONS][ownPieces];
+		long otherPlacements = binomials[BoardState.NUMBER_OF_POSITIONS - ownPieces][otherPieces];
+		MappedByteBuffer buffer;
+		
+		try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+			if (input.length() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to be mapped");
+			}
+			
+			buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+		}
+		
+		if (buffer.capacity() < FILE_HEADER_SIZE
+				|| buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FILE_VERSION
+				|| buffer.getInt(8) != ownPieces || buffer.getInt(12) != otherPieces
+				|| buffer.getInt(16) != ownPlacements) {
+			throw new IOException(file + " is not an endgame database of " + ownPieces + "v" + otherPieces);
+		}
+		
+		long valuesOffset = FILE_HEADER_SIZE + 4 * ownPlacements;
+		
+		if (buffer.getLong(24) != buffer.getInt(20) * otherPlacements
+				|| buffer.capacity() != valuesOffset + 2 * buffer.getLong(24)) {
+			throw new IOException(file + " is truncated");
+		}
+		
+		subspaces[ownPieces][otherPieces] = new Subspace(buffer, otherPlacements, (int) valuesOffset);
+	}
+	
+	public boolean hasSubspace(int ownPieces, int otherPieces) {
+		return ownPieces >= MIN_PIECES && ownPieces <= MAX_PIECES
+				&& otherPieces >= MIN_PIECES && otherPieces <= MAX_PIECES
+				&& subspaces[ownPieces][otherPieces] != null;
+	}
+	
+	public boolean isEmpty() {
+		for (int ownPieces = MIN_PIECES; ownPieces <= MAX_PIECES; ownPieces++) {
+			for (int otherPieces = MIN_PIECES; otherPieces <= MAX_PIECES; otherPieces++) {
+				if (subspaces[ownPieces][otherPieces] != null) {
+					return false;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Returns the value of the given position or {@link #UNKNOWN} if it is not
+	 * in the moving phase or its subspace has not been loaded.
+	 */
+	public int probe(BoardState boardState) {
+		if (boardState.getUnputPiecesOfCurrentPlayer() != 0 || boardState.getUnputPiecesOfOtherPlayer() != 0) {
+			return UNKNOWN;
+		}
+		
+		return probe(boardState.getPositionsMaskOfPlayer(boardState.getCurrentPlayer()),
+				boardState.getPositionsMaskOfPlayer(boardState.getOtherPlayer()));
+	}
+	
+	public int probe(int ownMask, int otherMask) {
+		int ownPieces = Integer.bitCount(ownMask);
+		int otherPieces = Integer.bitCount(otherMask);
+		
+		if (!hasSubspace(ownPieces, otherPieces)) {
+			return UNKNOWN;
+		}
+		
+		Subspace subspace = subspaces[ownPieces][otherPieces];
+		int entry = subspace.buffer.getInt(FILE_HEADER_SIZE + 4 * (int) getCombinationRank(ownMask));
+		int symmetry = entry & SYMMETRY_MASK;
+		long index = (entry >>> SYMMETRY_BITS) * subspace.otherPlacements
+				+ getRankOnFreePositions(BoardSymmetry.apply(symmetry, ownMask), BoardSymmetry.apply(symmetry, otherMask));
+		
+		return subspace.buffer.getShort((int) (subspace.valuesOffset + 2 * index));
+	}
+	
+	public static boolean isWin(int value) {
+		return value > 0 && value != UNKNOWN;
+	}
+	
+	public static boolean isLoss(int value) {
+		return value < 0 && value != UNKNOWN;
+	}
+	
+	/**
+	 * Returns the number of plies until the losing player is to move in a lost
+	 * position, for a value that is not a draw.
+	 */
+	public static int getDistance(int value) {
+		return Math.abs(value) - 1;
+	}
+	
+	public static int createValue(boolean isWin, int distance) {
+		return isWin ? distance + 1 : -(distance + 1);
+	}
+	
+	/**
+	 * Returns the number of positions of a subspace without symmetry reduction,
+	 * see {@link #getIndex(int, int)}.
+	 */
+	public static long getNumberOfPositions(int ownPieces, int otherPieces) {
+		return binomials[BoardState.NUMBER_OF_POSITIONS][ownPieces]
+				* binomials[BoardState.NUMBER_OF_POSITIONS - ownPieces][otherPieces];
+	}
+	
+	/**
+	 * Ranks the pieces of the player to move among all placements of the same
+	 * number of pieces, then the pieces of the other player among the placements
+	 * on the remaining empty positions, in colexicographic order.
+	 */
+	public static long getIndex(int ownMask, int otherMask) {
+		return getCombinationRank(ownMask)
+				* binomials[BoardState.NUMBER_OF_POSITIONS - Integer.bitCount(ownMask)][Integer.bitCount(otherMask)]
+				+ getRankOnFreePositions(ownMask, otherMask);
+	}
+	
+	private static long getCombinationRank(int mask) {
+		long result = 0;
+		int k = 1;
+		
+		for (int pieces = mask; pieces != 0; pieces &= pieces - 1) {
+			result += binomials[Integer.numberOfTrailingZeros(pieces)][k++];
+		}
+		
+		return result;
+	}
+	
+	private static long getRankOnFreePositions(int ownMask, int otherMask) {
+		long result = 0;
+		int k = 1;
+		
+		for (int pieces = otherMask; pieces != 0; pieces &= pieces - 1) {
+			int position = Integer.numberOfTrailingZeros(pieces);
+			int freePosition = position - Integer.bitCount(ownMask & ((1 << position) - 1));
+			
+			result += binomials[freePosition][k++];
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Inverse of {@link #getIndex(int, int)}: writes the mask of the player to
+	 * move to {@code masks[0]} and the mask of the other player to
+	 * {@code masks[1]}.
+	 */
+	public static void getMasks(int ownPieces, int otherPieces, long index, int[] masks) {
+		long otherPlacements = binomials[BoardState.NUMBER_OF_POSITIONS - ownPieces][otherPieces];
+		int ownMask = unrankCombination(index / otherPlacements, ownPieces, BoardState.NUMBER_OF_POSITIONS);
+		int otherPattern = unrankCombination(index % otherPlacements, otherPieces,
+				BoardState.NUMBER_OF_POSITIONS - ownPieces);
+		int otherMask = 0;
+		
+		for (int free = ~ownMask & BoardState.ALL_POSITIONS_MASK; otherPattern != 0; free &= free - 1) {
+			if ((otherPattern & 1) != 0) {
+				otherMask |= Integer.lowestOneBit(free);
+			}
+			
+			otherPattern >>>= 1;
+		}
+		
+		masks[0] = ownMask;
+		masks[1] = otherMask;
+	}
+	
+	private static int unrankCombination(long rank, int k, int n) {
+		int result = 0;
+		
+		for (; k > 0; k--) {
+			n--;
+			
+			while (binomials[n][k] > rank) {
+				n--;
+			}
+			
+			result |= 1 << n;
+			rank -= binomials[n][k];
+		}
+		
+		return result;
+	}
+	
+	public static String getFileName(int ownPieces, int otherPieces) {
+		return "endgame-" + ownPieces + "v" + otherPieces + ".dat";
+	}
+	
+	/**
+	 * Writes a subspace given as values of all positions in the order of
+	 * {@link #getIndex(int, int)}, keeping only the representatives of the
+	 * symmetry classes of the pieces of the player to move.
+	 */
+	public static void writeSubspace(File file, int ownPieces, int otherPieces, short[] values) throws IOException {
+		int ownPlacements = (int) binomials[BoardState.NUMBER_OF_POSITIONS][ownPieces];
+		int otherPlacements = (int) binomials[BoardState.NUMBER_OF_POSITIONS - ownPieces][otherPieces];
+		int[] ownRankToEntry = new int[ownPlacements];
+		int[] classToOwnRank = new int[ownPlacements];
+		int numberOfClasses = 0;
+		
+		// Placements are ranked in increasing numerical order, so the smallest
+		// mask of every class, its representative, comes first.
+		for (int rank = 0; rank < ownPlacements; rank++) {
+			int ownMask = unrankCombination(rank, ownPieces, BoardState.NUMBER_OF_POSITIONS);
+			int symmetry = BoardSymmetry.getCanonicalSymmetry(ownMask);
+			int classIndex;
+			
+			if (symmetry == BoardSymmetry.IDENTITY) {
+				classIndex = numberOfClasses;
+				classToOwnRank[numberOfClasses++] = rank;
+			} else {
+				classIndex = ownRankToEntry[(int) getCombinationRank(BoardSymmetry.apply(symmetry, ownMask))] >>> SYMMETRY_BITS;
+			}
+			
+			ownRankToEntry[rank] = classIndex << SYMMETRY_BITS | symmetry;
+		}
+		
+		try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+			output.setLength(0);
+			
+			FileChannel channel = output.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+			
+			buffer.putInt(FILE_MAGIC);
+			buffer.putInt(FILE_VERSION);
+			buffer.putInt(ownPieces);
+			buffer.putInt(otherPieces);
+			buffer.putInt(ownPlacements);
+			buffer.putInt(numberOfClasses);
+			buffer.putLong((long) numberOfClasses * otherPlacements);
+			
+			for (int rank = 0; rank < ownPlacements; rank++) {
+				if (buffer.remaining() < 4) {
+					writeFully(channel, buffer);
+				}
+				
+				buffer.putInt(ownRankToEntry[rank]);
+			}
+			
+			for (int classIndex = 0; classIndex < numberOfClasses; classIndex++) {
+				int offset = classToOwnRank[classIndex] * otherPlacements;
+				
+				for (int i = 0; i < otherPlacements; i++) {
+					if (buffer.remaining() < 2) {
+						writeFully(channel, buffer);
+					}
+					
+					buffer.putShort(values[offset + i]);
+				}
+			}
+			
+			writeFully(channel, buffer);
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		
+		buffer.clear();
+	}
+}
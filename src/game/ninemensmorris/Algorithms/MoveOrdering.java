@@ -0,0 +1,142 @@
+package game.ninemensmorris.Algorithms;
+
+import java.util.Arrays;
+
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+import game.ninemensmorris.Models.MoveEvaluationFunction;
+
+/**
+ * Move ordering of a single search thread, learned while searching: mill
+ * closing moves first, then the killer moves of the ply and then all other
+ * moves. Within these groups moves are ordered by the static evaluation
+ * function and, on equal static scores, by their history score. The hash
+ * move is tried before all of them by the {@link MovePicker}.
+ *
+ * The history counts cutoffs per player, from and to position (from is
+ * {@link #PLACING} while placing) and, for mill closing moves, per taken
+ * position. It is halved at the start of every search, so it carries over
+ * between moves but follows the game.
+ */
+final class MoveOrdering implements MoveEvaluationFunction {
+	private static final int PLACING = BoardState.NUMBER_OF_POSITIONS;
+	private static final int CAPTURE_SCORE = 1 << 28;
+	private static final int KILLER_SCORE = 1 << 27;
+	private static final int HISTORY_LIMIT = 1 << 14;
+	private static final int NUMBER_OF_KILLERS = 2;
+	
+	private final MoveEvaluationFunction evaluationFunction;
+	private final int[][] history;
+	private final int[][] captureHistory;
+	private int[][] killers;
+	private int ply;
+	
+	public MoveOrdering(MoveEvaluationFunction evaluationFunction) {
+		this.evaluationFunction = evaluationFunction;
+		this.history = new int[2][(PLACING + 1) * BoardState.NUMBER_OF_POSITIONS];
+		this.captureHistory = new int[2][BoardState.NUMBER_OF_POSITIONS];
+		this.killers = new int[0][];
+		this.ply = 0;
+	}
+	
+	/**
+	 * Forgets the killers, ages the history and makes room for killers of
+	 * the given number of plies.
+	 */
+	public void newSearch(int maxPly) {
+		if (killers.length <= maxPly) {
+			killers = new int[maxPly + 1][NUMBER_OF_KILLERS];
+		}
+		
+		for (int[] plyKillers : killers) {
+			Arrays.fill(plyKillers, Move.NO_MOVE);
+		}
+		
+		ageHistory();
+	}
+	
+	private void ageHistory() {
+		for (int player = 0; player < 2; player++) {
+			for (int i = 0; i < history[player].length; i++) {
+				history[player][i] >>= 1;
+			}
+			
+			for (int i = 0; i < captureHistory[player].length; i++) {
+				captureHistory[player][i] >>= 1;
+			}
+		}
+	}
+	
+	/**
+	 * Sets the node whose moves are evaluated next.
+	 */
+	public void setPly(int ply) {
+		this.ply = ply;
+	}
+	
+	private static int getHistoryIndex(int packedMove) {
+		int from = Move.unpackFromPosition(packedMove);
+		
+		return (from == -1 ? PLACING : from) * BoardState.NUMBER_OF_POSITIONS + Move.unpackToPosition(packedMove);
+	}
+	
+	private int getHistoryScore(int player, int packedMove) {
+		int result = history[player][getHistoryIndex(packedMove)];
+		int taken = Move.unpackPositionOfTakenPiece(packedMove);
+		
+		if (taken != -1) {
+			result = Math.min(result + captureHistory[player][taken], HISTORY_LIMIT - 1);
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public int evaluate(BoardState boardState, Move move) {
+		return evaluate(boardState, move.toPackedMove());
+	}
+	
+	@Override
+	public int evaluate(BoardState boardState, int packedMove) {
+		int result = evaluationFunction.evaluate(boardState, packedMove) * HISTORY_LIMIT
+				+ getHistoryScore(boardState.getCurrentPlayer(), packedMove);
+		
+		if (Move.unpackPositionOfTakenPiece(packedMove) != -1) {
+			return CAPTURE_SCORE + result;
+		}
+		
+		int[] plyKillers = killers[ply];
+		
+		for (int i = 0; i < NUMBER_OF_KILLERS; i++) {
+			if (packedMove == plyKillers[i]) {
+				return KILLER_SCORE - i;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Records a move of the current player of the given board that caused a
+	 * cutoff with the given remaining depth.
+	 */
+	public void onCutoff(BoardState boardState, int packedMove, int ply, int remainingDepth) {
+		int player = boardState.getCurrentPlayer();
+		int bonus = remainingDepth * remainingDepth;
+		int index = getHistoryIndex(packedMove);
+		int taken = Move.unpackPositionOfTakenPiece(packedMove);
+		
+		history[player][index] += bonus;
+		
+		if (taken != -1) {
+			captureHistory[player][taken] += bonus;
+		} else if (killers[ply][0] != packedMove) {
+			System.arraycopy(killers[ply], 0, killers[ply], 1, NUMBER_OF_KILLERS - 1);
+			killers[ply][0] = packedMove;
+		}
+		
+		if (history[player][index] >= HISTORY_LIMIT || (taken != -1 && captureHistory[player][taken] >= HISTORY_LIMIT)) {
+			ageHistory();
+		}
+	}
+}
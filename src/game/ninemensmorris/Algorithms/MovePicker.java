@@ -0,0 +1,132 @@
+package game.ninemensmorris.Algorithms;
+
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+import game.ninemensmorris.Models.MoveEvaluationFunction;
+
+/**
+ * Returns the moves of a node in stages, so that a node that is cut off
+ * early does not generate, score and sort all of its moves: first the hash
+ * move, then the moves closing a mill with every capture, then all other
+ * moves. The moves of a stage are only generated once the previous stage is
+ * exhausted, and are picked one at a time by descending score instead of
+ * being sorted up front.
+ *
+ * For the quiescence search the picker can instead be limited to the moves
+ * closing a mill.
+ */
+final class MovePicker {
+	private static final int HASH_MOVE_STAGE = 0;
+	private static final int MILL_MOVES_STAGE = 1;
+	private static final int QUIET_MOVES_STAGE = 2;
+	private static final int DONE = 3;
+	
+	private final int[] moves;
+	private final int[] scores;
+	private BoardState boardState;
+	private MoveEvaluationFunction evaluationFunction;
+	private int hashMove;
+	private int lastStage;
+	private int stage;
+	private int numberOfMoves;
+	private int index;
+	
+	public MovePicker() {
+		this.moves = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		this.scores = new int[BoardState.MAX_NUMBER_OF_MOVES];
+	}
+	
+	/**
+	 * Starts picking the moves of the given board. The hash move may be
+	 * {@link Move#NO_MOVE} or invalid, in which case it is skipped.
+	 */
+	public void reset(BoardState boardState, MoveEvaluationFunction evaluationFunction, int hashMove) {
+		this.boardState = boardState;
+		this.evaluationFunction = evaluationFunction;
+		this.hashMove = boardState.isMoveLegal(hashMove) ? hashMove : Move.NO_MOVE;
+		this.lastStage = QUIET_MOVES_STAGE;
+		this.stage = HASH_MOVE_STAGE;
+		this.numberOfMoves = 0;
+		this.index = 0;
+	}
+	
+	/**
+	 * Starts picking only the moves of the given board that close a mill.
+	 */
+	public void resetForQuiescence(BoardState boardState, MoveEvaluationFunction evaluationFunction) {
+		this.boardState = boardState;
+		this.evaluationFunction = evaluationFunction;
+		this.hashMove = Move.NO_MOVE;
+		this.lastStage = MILL_MOVES_STAGE;
+		this.stage = MILL_MOVES_STAGE;
+		this.numberOfMoves = 0;
+		this.index = 0;
+	}
+	
+	/**
+	 * Returns the next move, or {@link Move#NO_MOVE} once all moves were
+	 * returned. The board has to be in the state it was reset with.
+	 */
+	public int next() {
+		while (true) {
+			switch (stage) {
+				case HASH_MOVE_STAGE:
+					stage = MILL_MOVES_STAGE;
+					
+					if (hashMove != Move.NO_MOVE) {
+						return hashMove;
+					}
+					
+					break;
+				case MILL_MOVES_STAGE:
+				case QUIET_MOVES_STAGE:
+					if (index == 0 && numberOfMoves == 0) {
+						numberOfMoves = stage == MILL_MOVES_STAGE
+								? boardState.generateMillMoves(moves)
+								: boardState.generateQuietMoves(moves);
+						
+						for (int i = 0; i < numberOfMoves; i++) {
+							scores[i] = evaluationFunction.evaluate(boardState, moves[i]);
+						}
+					}
+					
+					while (index < numberOfMoves) {
+						int move = pickBest();
+						
+						if (move != hashMove) {
+							return move;
+						}
+					}
+					
+					stage = stage == lastStage ? DONE : stage + 1;
+					numberOfMoves = 0;
+					index = 0;
+					break;
+				default:
+					return Move.NO_MOVE;
+			}
+		}
+	}
+	
+	// Selects the remaining move with the highest score.
+	private int pickBest() {
+		int bestIndex = index;
+		
+		for (int i = index + 1; i < numberOfMoves; i++) {
+			if (scores[i] > scores[bestIndex]) {
+				bestIndex = i;
+			}
+		}
+		
+		int move = moves[bestIndex];
+		int score = scores[bestIndex];
+		
+		moves[bestIndex] = moves[index];
+		scores[bestIndex] = scores[index];
+		moves[index] = move;
+		scores[index] = score;
+		index++;
+		
+		return move;
+	}
+}
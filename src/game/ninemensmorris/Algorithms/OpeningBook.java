@@ -0,0 +1,216 @@
+package game.ninemensmorris.Algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.BoardSymmetry;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Best moves of precomputed deep searches (see
+ * game.ninemensmorris.Tools.OpeningBookGenerator), keyed by the canonical
+ * board ID of a position, so that one entry serves all positions that are
+ * equal up to a board symmetry. Moves are stored in the frame of the
+ * canonical form.
+ *
+ * The file holds a header followed by one entry of 24 bytes per position,
+ * sorted by key: the key, the canonical position, the packed move, the value
+ * and the search depth. The position is stored so that loading can check
+ * every key and reject books whose moves are not legal in their position.
+ */
+public final class OpeningBook {
+	private static final int FILE_MAGIC = 0x4E4D4D42;
+	private static final int FILE_VERSION = 2;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int POSITION_BITS = 24;
+	private static final int UNPUT_PIECES_BITS = 4;
+	private static final long POSITIONS_MASK = (1L << POSITION_BITS) - 1;
+	private static final long UNPUT_PIECES_MASK = (1L << UNPUT_PIECES_BITS) - 1;
+	
+	private long[] keys;
+	private long[] positions;
+	private int[] moves;
+	private short[] values;
+	private short[] depths;
+	private int size;
+	
+	public OpeningBook() {
+		this.keys = new long[INITIAL_CAPACITY];
+		this.positions = new long[INITIAL_CAPACITY];
+		this.moves = new int[INITIAL_CAPACITY];
+		this.values = new short[INITIAL_CAPACITY];
+		this.depths = new short[INITIAL_CAPACITY];
+		this.size = 0;
+	}
+	
+	public static OpeningBook load(File file) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != FILE_MAGIC) {
+				throw new IOException(file + " is not an opening book");
+			}
+			
+			int version = input.readInt();
+			if (version != FILE_VERSION) {
+				throw new IOException(file + " has version " + version + " instead of " + FILE_VERSION
+						+ ", regenerate it with OpeningBookGenerator");
+			}
+			
+			OpeningBook result = new OpeningBook();
+			int size = input.readInt();
+			
+			result.ensureCapacity(size);
+			
+			for (int i = 0; i < size; i++) {
+				result.keys[i] = input.readLong();
+				result.positions[i] = input.readLong();
+				result.moves[i] = input.readInt();
+				result.values[i] = input.readShort();
+				result.depths[i] = input.readShort();
+				
+				if (i > 0 && result.keys[i] <= result.keys[i - 1]) {
+					throw new IOException(file + " is not sorted");
+				}
+				
+				BoardState position = unpackPosition(result.positions[i]);
+				
+				if (position == null || position.getBoardID() != result.keys[i]) {
+					throw new IOException(file + " has an invalid position in entry " + i);
+				} else if (!position.isMoveLegal(result.moves[i])) {
+					throw new IOException(file + " has an illegal move in entry " + i);
+				}
+			}
+			
+			result.size = size;
+			
+			return result;
+		}
+	}
+	
+	public void save(File file) throws IOException {
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(FILE_MAGIC);
+			output.writeInt(FILE_VERSION);
+			output.writeInt(size);
+			
+			for (int i = 0; i < size; i++) {
+				output.writeLong(keys[i]);
+				output.writeLong(positions[i]);
+				output.writeInt(moves[i]);
+				output.writeShort(values[i]);
+				output.writeShort(depths[i]);
+			}
+		}
+	}
+	
+	public int getSize() {
+		return size;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (capacity > keys.length) {
+			int newCapacity = Math.max(capacity, 2 * keys.length);
+			
+			keys = Arrays.copyOf(keys, newCapacity);
+			positions = Arrays.copyOf(positions, newCapacity);
+			moves = Arrays.copyOf(moves, newCapacity);
+			values = Arrays.copyOf(values, newCapacity);
+			depths = Arrays.copyOf(depths, newCapacity);
+		}
+	}
+	
+	/**
+	 * Packs the position seen through the given symmetry: the pieces of both
+	 * players, the player to move and the unput pieces of both players.
+	 */
+	private static long packPosition(BoardState boardState, int symmetry) {
+		return BoardSymmetry.apply(symmetry, boardState.getPositionsMaskOfPlayer(0))
+				| (long) BoardSymmetry.apply(symmetry, boardState.getPositionsMaskOfPlayer(1)) << POSITION_BITS
+				| (long) boardState.getUnputPiecesOfPlayer(0) << (2 * POSITION_BITS)
+				| (long) boardState.getUnputPiecesOfPlayer(1) << (2 * POSITION_BITS + UNPUT_PIECES_BITS)
+				| (long) boardState.getCurrentPlayer() << (2 * POSITION_BITS + 2 * UNPUT_PIECES_BITS);
+	}
+	
+	/**
+	 * Returns the packed position, or null if it is not a valid position.
+	 */
+	private static BoardState unpackPosition(long position) {
+		try {
+			return new BoardState(
+					new int[] {(int) (position & POSITIONS_MASK), (int) (position >>> POSITION_BITS & POSITIONS_MASK)},
+					(int) (position >>> (2 * POSITION_BITS + 2 * UNPUT_PIECES_BITS)),
+					new int[] {(int) (position >>> (2 * POSITION_BITS) & UNPUT_PIECES_MASK),
+							(int) (position >>> (2 * POSITION_BITS + UNPUT_PIECES_BITS) & UNPUT_PIECES_MASK)});
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	private int find(BoardState boardState) {
+		return Arrays.binarySearch(keys, 0, size, boardState.getCanonicalBoardID());
+	}
+	
+	/**
+	 * Adds or replaces the entry of the given position. The move is given in
+	 * the frame of the position.
+	 */
+	public void put(BoardState boardState, int packedMove, int value, int depth) {
+		int symmetry = boardState.getCanonicalSymmetry();
+		int index = find(boardState);
+		
+		if (index < 0) {
+			index = -index - 1;
+			ensureCapacity(size + 1);
+			
+			System.arraycopy(keys, index, keys, index + 1, size - index);
+			System.arraycopy(positions, index, positions, index + 1, size - index);
+			System.arraycopy(moves, index, moves, index + 1, size - index);
+			System.arraycopy(values, index, values, index + 1, size - index);
+			System.arraycopy(depths, index, depths, index + 1, size - index);
+			size++;
+		}
+		
+		keys[index] = boardState.getBoardID(symmetry);
+		positions[index] = packPosition(boardState, symmetry);
+		moves[index] = BoardSymmetry.applyToMove(symmetry, packedMove);
+		values[index] = (short) value;
+		depths[index] = (short) depth;
+	}
+	
+	public boolean contains(BoardState boardState) {
+		return find(boardState) >= 0;
+	}
+	
+	/**
+	 * Returns the book move of the given position in its own frame, or
+	 * {@link Move#NO_MOVE} if the position is not in the book.
+	 */
+	public int getMove(BoardState boardState) {
+		int index = find(boardState);
+		
+		if (index < 0) {
+			return Move.NO_MOVE;
+		}
+		
+		return BoardSymmetry.applyToMove(BoardSymmetry.getInverse(boardState.getCanonicalSymmetry()), moves[index]);
+	}
+	
+	public int getValue(BoardState boardState) {
+		int index = find(boardState);
+		
+		return index < 0 ? 0 : values[index];
+	}
+	
+	public int getDepth(BoardState boardState) {
+		int index = find(boardState);
+		
+		return index < 0 ? 0 : depths[index];
+	}
+}
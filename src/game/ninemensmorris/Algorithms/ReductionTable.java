@@ -0,0 +1,76 @@
+package game.ninemensmorris.Algorithms;
+
+import game.ninemensmorris.Models.BoardState;
+
+/**
+ * Late move reductions by remaining depth and move number. A quiet move
+ * that is searched late at a node is first searched with its depth reduced
+ * by base + ln(depth) * ln(move number) / divisor plies, rounded down to an
+ * even number, so that the leaves keep the player to move like the
+ * iterative deepening steps of 2. Nodes with less than minDepth remaining
+ * plies and the first minMoveNumber - 1 moves of a node are never reduced.
+ */
+public final class ReductionTable {
+	public static final ReductionTable DEFAULT = new ReductionTable(3, 4, 0.5, 2.0);
+	
+	private static final int MAX_DEPTH = 128;
+	
+	private final int minDepth;
+	private final int minMoveNumber;
+	private final double base;
+	private final double divisor;
+	private final byte[][] reductions;
+	
+	public ReductionTable(int minDepth, int minMoveNumber, double base, double divisor) {
+		if (minDepth < 2 || minMoveNumber < 2 || divisor <= 0) {
+			throw new IllegalArgumentException("invalid reduction table: " + minDepth + ","
+					+ minMoveNumber + "," + base + "," + divisor);
+		}
+		
+		this.minDepth = minDepth;
+		this.minMoveNumber = minMoveNumber;
+		this.base = base;
+		this.divisor = divisor;
+		this.reductions = new byte[MAX_DEPTH][BoardState.MAX_NUMBER_OF_MOVES + 1];
+		
+		for (int depth = minDepth; depth < MAX_DEPTH; depth++) {
+			for (int moveNumber = minMoveNumber; moveNumber <= BoardState.MAX_NUMBER_OF_MOVES; moveNumber++) {
+				int reduction = (int) (base + Math.log(depth) * Math.log(moveNumber) / divisor);
+				
+				reductions[depth][moveNumber] = (byte) Math.max(0, Math.min(reduction, depth - 1) & ~1);
+			}
+		}
+	}
+	
+	/**
+	 * Parses the notation of {@link #toString()}:
+	 * "minDepth,minMoveNumber,base,divisor", e.g. "3,4,0.5,2.0".
+	 */
+	public static ReductionTable parse(String notation) {
+		String[] parts = notation.trim().split(",");
+		
+		if (parts.length != 4) {
+			throw new IllegalArgumentException("invalid reduction table: " + notation);
+		}
+		
+		try {
+			return new ReductionTable(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+					Double.parseDouble(parts[2].trim()), Double.parseDouble(parts[3].trim()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid reduction table: " + notation, e);
+		}
+	}
+	
+	/**
+	 * Returns the number of plies by which the move with the given number
+	 * (starting at 1) of a node with the given remaining depth is reduced.
+	 */
+	public int getReduction(int remainingDepth, int moveNumber) {
+		return reductions[Math.min(remainingDepth, MAX_DEPTH - 1)][moveNumber];
+	}
+	
+	@Override
+	public String toString() {
+		return minDepth + "," + minMoveNumber + "," + base + "," + divisor;
+	}
+}
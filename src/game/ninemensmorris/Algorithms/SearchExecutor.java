@@ -0,0 +1,184 @@
+package game.ninemensmorris.Algorithms;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Bounded pool of platform threads for CPU-bound searches, e.g. for
+ * {@link AlphaBetaPruning#searchAsync}. At most numberOfThreads searches run
+ * at the same time and at most queueCapacity wait; further tasks are
+ * rejected with a RejectedExecutionException instead of oversubscribing the
+ * cores, so that a caller under load can refuse or retry the request.
+ *
+ * Every search with more than one thread starts its own helper threads, so
+ * searches that share an executor should usually be single threaded.
+ */
+public final class SearchExecutor implements Executor {
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+	
+	private final ThreadPoolExecutor threadPool;
+	private final AtomicLong submittedTasks;
+	private final AtomicLong rejectedTasks;
+	private final AtomicLong startedTasks;
+	private final AtomicLong completedTasks;
+	private final AtomicLong totalQueueNanos;
+	private final LongAccumulator maxQueueNanos;
+	private final AtomicLong totalRunNanos;
+	
+	public SearchExecutor(final String name, int numberOfThreads, int queueCapacity) {
+		if (numberOfThreads < 1 || queueCapacity < 1) {
+			throw new IllegalArgumentException("invalid search executor: " + numberOfThreads + " threads, queue capacity " + queueCapacity);
+		}
+		
+		this.threadPool = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), newDaemonThreadFactory(name));
+		this.submittedTasks = new AtomicLong();
+		this.rejectedTasks = new AtomicLong();
+		this.startedTasks = new AtomicLong();
+		this.completedTasks = new AtomicLong();
+		this.totalQueueNanos = new AtomicLong();
+		this.maxQueueNanos = new LongAccumulator(new LongBinaryOperator() {
+			@Override
+			public long applyAsLong(long left, long right) {
+				return Math.max(left, right);
+			}
+		}, 0);
+		this.totalRunNanos = new AtomicLong();
+	}
+	
+	/**
+	 * Returns a thread factory for daemon threads named name-1, name-2 and so on.
+	 */
+	public static ThreadFactory newDaemonThreadFactory(final String name) {
+		return new ThreadFactory() {
+			private final AtomicInteger numberOfThreads = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name + "-" + numberOfThreads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+	
+	/**
+	 * Returns an executor that runs every task on a new virtual thread, for
+	 * tasks that mostly wait, such as handling a request that waits for a
+	 * search. Virtual threads need Java 21; on older runtimes the tasks run
+	 * on a cached pool of daemon threads instead.
+	 */
+	public static ExecutorService newRequestExecutor(String name) {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(newDaemonThreadFactory(name));
+		}
+	}
+	
+	/**
+	 * Queues the task, or throws a RejectedExecutionException if the queue is
+	 * full or the executor is shut down.
+	 */
+	@Override
+	public void execute(final Runnable task) {
+		final long submitTime = System.nanoTime();
+		
+		submittedTasks.incrementAndGet();
+		
+		try {
+			threadPool.execute(new Runnable() {
+				@Override
+				public void run() {
+					long startTime = System.nanoTime();
+					
+					startedTasks.incrementAndGet();
+					totalQueueNanos.addAndGet(startTime - submitTime);
+					maxQueueNanos.accumulate(startTime - submitTime);
+					
+					try {
+						task.run();
+					} finally {
+						totalRunNanos.addAndGet(System.nanoTime() - startTime);
+						completedTasks.incrementAndGet();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejectedTasks.incrementAndGet();
+			throw e;
+		}
+	}
+	
+	public int getNumberOfThreads() {
+		return threadPool.getMaximumPoolSize();
+	}
+	
+	public int getQueueLength() {
+		return threadPool.getQueue().size();
+	}
+	
+	public int getActiveTasks() {
+		return threadPool.getActiveCount();
+	}
+	
+	public long getSubmittedTasks() {
+		return submittedTasks.get();
+	}
+	
+	public long getRejectedTasks() {
+		return rejectedTasks.get();
+	}
+	
+	public long getCompletedTasks() {
+		return completedTasks.get();
+	}
+	
+	/**
+	 * Returns the average time the started tasks waited in the queue.
+	 */
+	public long getAverageQueueNanos() {
+		long started = startedTasks.get();
+		
+		return started == 0 ? 0 : totalQueueNanos.get() / started;
+	}
+	
+	public long getMaxQueueNanos() {
+		return maxQueueNanos.get();
+	}
+	
+	public long getAverageRunNanos() {
+		long completed = completedTasks.get();
+		
+		return completed == 0 ? 0 : totalRunNanos.get() / completed;
+	}
+	
+	/**
+	 * Stops accepting tasks and drops the queued ones. Searches do not react
+	 * to interrupts, so running searches have to be cancelled separately.
+	 */
+	public void shutdown() {
+		threadPool.shutdownNow();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%d threads, %d active, %d queued, %d submitted, %d completed, %d rejected, "
+				+ "queue wait avg %.1f ms max %.1f ms, run avg %.1f ms", getNumberOfThreads(), getActiveTasks(),
+				getQueueLength(), getSubmittedTasks(), getCompletedTasks(), getRejectedTasks(),
+				getAverageQueueNanos() / 1e6, getMaxQueueNanos() / 1e6, getAverageRunNanos() / 1e6);
+	}
+}
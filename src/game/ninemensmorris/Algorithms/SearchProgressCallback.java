@@ -0,0 +1,9 @@
+package game.ninemensmorris.Algorithms;
+
+import java.util.List;
+
+import game.ninemensmorris.Models.Move;
+
+public interface SearchProgressCallback {
+	public void onDepthCompleted(int depth, int value, long nodes, long timeInNanos, List<Move> principalVariation);
+}
@@ -0,0 +1,55 @@
+package game.ninemensmorris.Algorithms;
+
+import java.util.Collections;
+import java.util.List;
+
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Outcome of a completed search: the best move with the value and depth of
+ * the last completed iteration and the principal variation starting with
+ * the best move.
+ */
+public final class SearchResult {
+	private final Move bestMove;
+	private final int value;
+	private final int depth;
+	private final List<Move> principalVariation;
+	private final long searchedNodes;
+	
+	public SearchResult(Move bestMove, int value, int depth, List<Move> principalVariation, long searchedNodes) {
+		this.bestMove = bestMove;
+		this.value = value;
+		this.depth = depth;
+		this.principalVariation = Collections.unmodifiableList(principalVariation);
+		this.searchedNodes = searchedNodes;
+	}
+	
+	/**
+	 * Returns the best move, or null if the position has no moves.
+	 */
+	public Move getBestMove() {
+		return bestMove;
+	}
+	
+	public int getValue() {
+		return value;
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+	
+	public List<Move> getPrincipalVariation() {
+		return principalVariation;
+	}
+	
+	public long getSearchedNodes() {
+		return searchedNodes;
+	}
+	
+	@Override
+	public String toString() {
+		return "bestmove " + bestMove + " value " + value + " depth " + depth + " pv " + principalVariation;
+	}
+}
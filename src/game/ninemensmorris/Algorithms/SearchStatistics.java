@@ -0,0 +1,88 @@
+package game.ninemensmorris.Algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Time and node count needed to complete every iterative deepening depth of
+ * a single search, used to compare parallel modes and thread counts, and
+ * how often late move reductions were applied and failed.
+ */
+public final class SearchStatistics {
+	private final int numberOfThreads;
+	private final List<Integer> completedDepths;
+	private final List<Long> timesToDepth;
+	private final List<Long> nodesToDepth;
+	private long reducedSearches;
+	private long reSearches;
+	
+	public SearchStatistics(int numberOfThreads) {
+		this.numberOfThreads = numberOfThreads;
+		this.completedDepths = new ArrayList<Integer>();
+		this.timesToDepth = new ArrayList<Long>();
+		this.nodesToDepth = new ArrayList<Long>();
+	}
+	
+	public synchronized void addCompletedDepth(int depth, long timeInNanos, long nodes) {
+		completedDepths.add(depth);
+		timesToDepth.add(timeInNanos);
+		nodesToDepth.add(nodes);
+	}
+	
+	/**
+	 * Adds searches with a reduced depth and how many of them had to be
+	 * searched again with the full depth.
+	 */
+	public synchronized void addReductions(long reducedSearches, long reSearches) {
+		this.reducedSearches += reducedSearches;
+		this.reSearches += reSearches;
+	}
+	
+	public synchronized long getNumberOfReducedSearches() {
+		return reducedSearches;
+	}
+	
+	public synchronized long getNumberOfReSearches() {
+		return reSearches;
+	}
+	
+	public int getNumberOfThreads() {
+		return numberOfThreads;
+	}
+	
+	public synchronized int getNumberOfCompletedDepths() {
+		return completedDepths.size();
+	}
+	
+	public synchronized int getCompletedDepth(int index) {
+		return completedDepths.get(index);
+	}
+	
+	public synchronized long getTimeToDepth(int index) {
+		return timesToDepth.get(index);
+	}
+	
+	public synchronized long getNodesToDepth(int index) {
+		return nodesToDepth.get(index);
+	}
+	
+	public synchronized int getMaxCompletedDepth() {
+		return completedDepths.isEmpty() ? 0 : completedDepths.get(completedDepths.size() - 1);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		StringBuilder result = new StringBuilder();
+		
+		for (int i = 0; i < completedDepths.size(); i++) {
+			result.append(String.format("depth %2d: %10.2f ms %12d nodes%n",
+					completedDepths.get(i), timesToDepth.get(i) / 1e6, nodesToDepth.get(i)));
+		}
+		
+		if (reducedSearches > 0) {
+			result.append(String.format("%d reduced searches, %d searched again%n", reducedSearches, reSearches));
+		}
+		
+		return result.toString();
+	}
+}
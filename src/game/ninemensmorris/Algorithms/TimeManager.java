@@ -0,0 +1,97 @@
+package game.ninemensmorris.Algorithms;
+
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Time limits of a single search. The hard limit is the maximum time per
+ * move, at which a running iteration is stopped; the search only reads the
+ * clock every {@link #POLL_INTERVAL} nodes. The soft limit decides between
+ * iterations whether another one is started: not after 60% of the time is
+ * used, and not if the hard limit would stop the next iteration within its
+ * first quarter, predicting its time from the growth of the iteration times
+ * so far. A partial iteration still pays off, because its first root moves
+ * usually confirm or improve the best move. While the best move changes
+ * between iterations the soft limit is raised to the hard limit.
+ */
+final class TimeManager {
+	// A power of 2, so that polling is a mask test.
+	public static final int POLL_INTERVAL = 1024;
+	
+	private static final int NANOS_PER_MILLISECOND = 1000000;
+	private static final double SOFT_LIMIT_FRACTION = 0.6;
+	private static final double MIN_PREDICTED_FRACTION = 0.25;
+	// Growth of the iteration time by 2 plies while only one iteration is known.
+	private static final double DEFAULT_BRANCHING_FACTOR = 4;
+	private static final double MAX_BRANCHING_FACTOR = 32;
+	
+	private volatile long startNanoTime;
+	private long hardLimitNanos;
+	private long lastIterationEndNanoTime;
+	private long lastIterationNanos;
+	private long previousIterationNanos;
+	private int lastBestMove;
+	private boolean isBestMoveUnstable;
+	
+	/**
+	 * Starts the clock of a search with the given maximum time per move in
+	 * milliseconds.
+	 */
+	public void start(int maxTime) {
+		hardLimitNanos = (long) maxTime * NANOS_PER_MILLISECOND;
+		lastIterationNanos = 0;
+		previousIterationNanos = 0;
+		lastBestMove = Move.NO_MOVE;
+		isBestMoveUnstable = false;
+		startNanoTime = System.nanoTime();
+		lastIterationEndNanoTime = startNanoTime;
+	}
+	
+	/**
+	 * Starts the clock again without forgetting the iterations so far, e.g.
+	 * when a pondering search becomes a normal one.
+	 */
+	public void restart() {
+		startNanoTime = System.nanoTime();
+	}
+	
+	public long getElapsedNanos() {
+		return System.nanoTime() - startNanoTime;
+	}
+	
+	public boolean isHardLimitReached() {
+		return getElapsedNanos() > hardLimitNanos;
+	}
+	
+	/**
+	 * Returns the {@link System#nanoTime()} at which the hard limit is reached.
+	 */
+	public long getHardDeadline() {
+		return startNanoTime + hardLimitNanos;
+	}
+	
+	public void onIterationCompleted(int bestMove) {
+		long now = System.nanoTime();
+		
+		previousIterationNanos = lastIterationNanos;
+		lastIterationNanos = now - lastIterationEndNanoTime;
+		lastIterationEndNanoTime = now;
+		isBestMoveUnstable = lastBestMove != Move.NO_MOVE && bestMove != lastBestMove;
+		lastBestMove = bestMove;
+	}
+	
+	private double getBranchingFactor() {
+		if (previousIterationNanos <= 0) {
+			return DEFAULT_BRANCHING_FACTOR;
+		}
+		
+		return Math.max(1, Math.min((double) lastIterationNanos / previousIterationNanos, MAX_BRANCHING_FACTOR));
+	}
+	
+	public boolean shouldStartIteration() {
+		long elapsedNanos = getElapsedNanos();
+		double softLimitNanos = isBestMoveUnstable ? hardLimitNanos : SOFT_LIMIT_FRACTION * hardLimitNanos;
+		
+		return elapsedNanos < softLimitNanos
+				&& elapsedNanos + MIN_PREDICTED_FRACTION * lastIterationNanos * getBranchingFactor() <= hardLimitNanos;
+	}
+}
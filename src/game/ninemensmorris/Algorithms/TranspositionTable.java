@@ -0,0 +1,206 @@
+package game.ninemensmorris.Algorithms;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Fixed-size transposition table storing every entry packed into a single long.
+ * Buckets hold two entries: the first one is replaced only by deeper (or same
+ * position) searches or when it was stored before the current search, the
+ * second one is always replaced. Entries of earlier searches stay usable, so
+ * the table can be kept across moves and games.
+ * 
+ * Entry layout, from the lowest bit: best move (15 bits), value (16 bits),
+ * remaining depth (7 bits), bound type (2 bits), generation (4 bits), key
+ * check bits (20 bits).
+ * 
+ * The table can be shared by several search threads without locking: every
+ * entry is read and written atomically, so a racing write can only replace
+ * a whole entry, never mix the data of two positions.
+ */
+public final class TranspositionTable {
+	public static final long NO_ENTRY = 0;
+	
+	public static final int EXACT = 1;
+	public static final int LOWER_BOUND = 2;
+	public static final int UPPER_BOUND = 3;
+	
+	private static final int MOVE_SHIFT = 0;
+	private static final int VALUE_SHIFT = 15;
+	private static final int DEPTH_SHIFT = 31;
+	private static final int BOUND_SHIFT = 38;
+	private static final int GENERATION_SHIFT = 40;
+	private static final int CHECK_SHIFT = 44;
+	
+	private static final long MOVE_MASK = (1L << 15) - 1;
+	private static final long VALUE_MASK = (1L << 16) - 1;
+	private static final long DEPTH_MASK = (1L << 7) - 1;
+	private static final long BOUND_MASK = (1L << 2) - 1;
+	private static final long GENERATION_MASK = (1L << 4) - 1;
+	
+	public static final int MAX_DEPTH = (int) DEPTH_MASK;
+	
+	private final AtomicLongArray entries;
+	private final long bucketMask;
+	private volatile int generation;
+	
+	public TranspositionTable(int sizeInMegabytes) {
+		this(new AtomicLongArray(getNumberOfEntries(sizeInMegabytes)));
+	}
+	
+	private TranspositionTable(AtomicLongArray entries) {
+		this.entries = entries;
+		this.bucketMask = entries.length() / 2 - 1;
+		this.generation = 0;
+	}
+	
+	private static int getNumberOfEntries(int sizeInMegabytes) {
+		if (sizeInMegabytes < 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		return (int) Math.min(Long.highestOneBit(sizeInMegabytes * 1024L * 1024L / 8), 1 << 30);
+	}
+	
+	public int getSizeInMegabytes() {
+		return (int) (entries.length() * 8L / (1024 * 1024));
+	}
+	
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.lazySet(i, NO_ENTRY);
+		}
+	}
+	
+	/**
+	 * Starts a new generation, so that entries of earlier searches are
+	 * replaced before deeper entries of the coming one.
+	 */
+	public void newSearch() {
+		generation = (int) ((generation + 1) & GENERATION_MASK);
+	}
+	
+	public int getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * Writes the generation and all entries. Board IDs are stable across
+	 * runs, so a table read back with {@link #load(DataInputStream)} is valid
+	 * in another process.
+	 */
+	public void save(DataOutputStream output) throws IOException {
+		output.writeInt(generation);
+		output.writeInt(entries.length());
+		
+		for (int i = 0; i < entries.length(); i++) {
+			output.writeLong(entries.get(i));
+		}
+	}
+	
+	public static TranspositionTable load(DataInputStream input) throws IOException {
+		int generation = input.readInt();
+		int numberOfEntries = input.readInt();
+		
+		if (numberOfEntries < 2 || Integer.bitCount(numberOfEntries) != 1
+				|| generation < 0 || generation > GENERATION_MASK) {
+			throw new IOException("invalid transposition table header");
+		}
+		
+		AtomicLongArray entries = new AtomicLongArray(numberOfEntries);
+		
+		for (int i = 0; i < numberOfEntries; i++) {
+			entries.lazySet(i, input.readLong());
+		}
+		
+		TranspositionTable result = new TranspositionTable(entries);
+		result.generation = generation;
+		
+		return result;
+	}
+	
+	private int getBucketIndex(long key) {
+		return (int) (key & bucketMask) << 1;
+	}
+	
+	private static long getCheckBits(long key) {
+		return key >>> CHECK_SHIFT;
+	}
+	
+	private static boolean isEntryOf(long entry, long key) {
+		return entry != NO_ENTRY && entry >>> CHECK_SHIFT == getCheckBits(key);
+	}
+	
+	public long probe(long key) {
+		int index = getBucketIndex(key);
+		
+		long entry = entries.get(index);
+		if (isEntryOf(entry, key)) {
+			refresh(index, entry);
+			return entry;
+		}
+		
+		entry = entries.get(index + 1);
+		if (isEntryOf(entry, key)) {
+			return entry;
+		}
+		
+		return NO_ENTRY;
+	}
+	
+	// Entries of earlier searches that are still used keep their slot.
+	private void refresh(int index, long entry) {
+		int currentGeneration = generation;
+		
+		if (getGeneration(entry) != currentGeneration) {
+			entries.compareAndSet(index, entry, entry & ~(GENERATION_MASK << GENERATION_SHIFT)
+					| (long) currentGeneration << GENERATION_SHIFT);
+		}
+	}
+	
+	public void store(long key, int value, int depth, int bound, int bestMove) {
+		int index = getBucketIndex(key);
+		int currentGeneration = generation;
+		long entry = getCheckBits(key) << CHECK_SHIFT
+				| (long) currentGeneration << GENERATION_SHIFT
+				| (bound & BOUND_MASK) << BOUND_SHIFT
+				| (Math.min(depth, MAX_DEPTH) & DEPTH_MASK) << DEPTH_SHIFT
+				| (value & VALUE_MASK) << VALUE_SHIFT
+				| (bestMove & MOVE_MASK) << MOVE_SHIFT;
+		
+		long depthPreferred = entries.get(index);
+		
+		if (depthPreferred == NO_ENTRY || isEntryOf(depthPreferred, key) || depth >= getDepth(depthPreferred)
+				|| getGeneration(depthPreferred) != currentGeneration) {
+			entries.lazySet(index, entry);
+		} else {
+			entries.lazySet(index + 1, entry);
+		}
+	}
+	
+	public static int getValue(long entry) {
+		return (short) (entry >>> VALUE_SHIFT & VALUE_MASK);
+	}
+	
+	public static int getDepth(long entry) {
+		return (int) (entry >>> DEPTH_SHIFT & DEPTH_MASK);
+	}
+	
+	public static int getBound(long entry) {
+		return (int) (entry >>> BOUND_SHIFT & BOUND_MASK);
+	}
+	
+	public static int getGeneration(long entry) {
+		return (int) (entry >>> GENERATION_SHIFT & GENERATION_MASK);
+	}
+	
+	public static int getBestMove(long entry) {
+		int bestMove = (int) (entry >>> MOVE_SHIFT & MOVE_MASK);
+		
+		return bestMove == MOVE_MASK ? Move.NO_MOVE : bestMove;
+	}
+}
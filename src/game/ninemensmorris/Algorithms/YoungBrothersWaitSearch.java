@@ -0,0 +1,352 @@
+package game.ninemensmorris.Algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+import game.ninemensmorris.Models.MoveEvaluationFunction;
+
+/**
+ * Deterministic parallel alpha-beta based on the young brothers wait concept:
+ * at every node with enough remaining depth the first child is searched
+ * serially, then all remaining siblings are searched in parallel as fork-join
+ * tasks, each on its own board copy and with the window established by the
+ * first child. Siblings never see each other's results and no transposition
+ * table is used, so the value and the best move of a fixed depth search do
+ * not depend on the number of threads or on scheduling.
+ */
+final class YoungBrothersWaitSearch {
+	public static final int DEFAULT_MIN_SPLIT_DEPTH = 3;
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	private final ForkJoinPool forkJoinPool;
+	private final MoveEvaluationFunction moveEvaluationFunction;
+	private final EndgameDatabase endgameDatabase;
+	private final int minSplitDepth;
+	private final LongAdder searchedNodes;
+	private final ThreadLocal<int[][]> movesPerDepth;
+	private final ThreadLocal<int[][]> scoresPerDepth;
+	private final ThreadLocal<int[]> nodesSincePoll;
+	private volatile boolean stopped;
+	private volatile long deadline;
+	private long maxNodes;
+	private int bestMove;
+
+	public YoungBrothersWaitSearch(ForkJoinPool forkJoinPool,
+			MoveEvaluationFunction moveEvaluationFunction, EndgameDatabase endgameDatabase, int minSplitDepth) {
+		this.forkJoinPool = forkJoinPool;
+		this.moveEvaluationFunction = moveEvaluationFunction;
+		this.endgameDatabase = endgameDatabase;
+		this.minSplitDepth = minSplitDepth;
+		this.searchedNodes = new LongAdder();
+		this.movesPerDepth = new ThreadLocal<int[][]>();
+		this.scoresPerDepth = new ThreadLocal<int[][]>();
+		this.nodesSincePoll = new ThreadLocal<int[]>() {
+			@Override
+			protected int[] initialValue() {
+				return new int[1];
+			}
+		};
+		this.stopped = false;
+		this.deadline = NO_DEADLINE;
+		this.maxNodes = Long.MAX_VALUE;
+		this.bestMove = Move.NO_MOVE;
+	}
+
+	/**
+	 * Sets the {@link System#nanoTime()} at which the search stops, or
+	 * {@link #NO_DEADLINE}.
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	public void setMaxNodes(long maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	public void stop() {
+		stopped = true;
+	}
+
+	public long getSearchedNodes() {
+		return searchedNodes.sum();
+	}
+
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	/**
+	 * Searches the given position to a fixed depth and returns its value, or
+	 * {@link AlphaBetaPruning#END_SEARCH} if the search has been stopped.
+	 */
+	public int search(BoardState boardState, int depth) {
+		SplitTask rootTask = new SplitTask(new BoardState(boardState),
+				-AlphaBetaPruning.INFINITY, AlphaBetaPruning.INFINITY, depth, true);
+		int value = forkJoinPool.invoke(rootTask);
+
+		if (value != AlphaBetaPruning.END_SEARCH) {
+			bestMove = rootTask.nodeBestMove;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Checks the stop flag at every node, but the clock and the node limit
+	 * only every {@link TimeManager#POLL_INTERVAL} nodes of the calling
+	 * thread, counted in its element of nodesSincePoll.
+	 */
+	private boolean isStopped(int[] threadNodesSincePoll) {
+		if (stopped) {
+			return true;
+		}
+
+		if (++threadNodesSincePoll[0] < TimeManager.POLL_INTERVAL) {
+			return false;
+		}
+
+		threadNodesSincePoll[0] = 0;
+
+		long currentDeadline = deadline;
+		if ((currentDeadline != NO_DEADLINE && System.nanoTime() - currentDeadline > 0)
+				|| searchedNodes.sum() >= maxNodes) {
+			stopped = true;
+		}
+
+		return stopped;
+	}
+
+	private int[][] getBuffer(ThreadLocal<int[][]> buffers, int depth) {
+		int[][] buffer = buffers.get();
+
+		if (buffer == null || buffer.length <= depth) {
+			buffer = new int[depth + 1][BoardState.MAX_NUMBER_OF_MOVES];
+			buffers.set(buffer);
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Plain alpha-beta used below the minimal split depth. It never forks or
+	 * joins, so it can safely use the move buffers and the node counter of the
+	 * executing thread.
+	 */
+	private int serialSearch(BoardState board, int alpha, int beta, int remainingDepth, int[] threadNodesSincePoll) {
+		if (isStopped(threadNodesSincePoll)) {
+			return AlphaBetaPruning.END_SEARCH;
+		}
+
+		searchedNodes.increment();
+
+		if (endgameDatabase != null) {
+			int endgameValue = endgameDatabase.probe(board);
+
+			if (endgameValue != EndgameDatabase.UNKNOWN) {
+				return AlphaBetaPruning.getEndgameSearchValue(endgameValue);
+			}
+		}
+
+		int[] validMoves = getBuffer(movesPerDepth, remainingDepth)[remainingDepth];
+		int numberOfValidMoves = board.generateMoves(validMoves,
+				getBuffer(scoresPerDepth, remainingDepth)[remainingDepth], moveEvaluationFunction);
+		if (board.getRemainingPiecesOfCurrentPlayer() < 3 || numberOfValidMoves == 0) {
+			return -AlphaBetaPruning.WIN_BOARD_VALUE;
+		}
+
+		if (remainingDepth == 0) {
+			return AlphaBetaPruning.evaluateBoard(board);
+		}
+
+		int nodeBestValue = -AlphaBetaPruning.INFINITY;
+
+		for (int i = 0; i < numberOfValidMoves; i++) {
+			int move = validMoves[i];
+			board.makeMove(move);
+
+			int value = -serialSearch(board, -beta, -alpha, remainingDepth - 1, threadNodesSincePoll);
+
+			board.undoMove(move);
+
+			if (Math.abs(value) == AlphaBetaPruning.END_SEARCH) {
+				return AlphaBetaPruning.END_SEARCH;
+			}
+
+			nodeBestValue = Math.max(nodeBestValue, value);
+			alpha = Math.max(alpha, value);
+
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		return nodeBestValue;
+	}
+
+	private final class SplitTask extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final SplitTask parent;
+		private final BoardState board;
+		private final int alpha;
+		private final int beta;
+		private final int remainingDepth;
+		private final boolean isRoot;
+		private final int siblingIndex;
+		private final AtomicInteger firstCutoffIndex;
+		private int nodeBestMove;
+
+		public SplitTask(BoardState board, int alpha, int beta, int remainingDepth, boolean isRoot) {
+			this(null, board, alpha, beta, remainingDepth, isRoot, 0, null);
+		}
+
+		private SplitTask(SplitTask parent, BoardState board, int alpha, int beta, int remainingDepth,
+				boolean isRoot, int siblingIndex, AtomicInteger firstCutoffIndex) {
+			this.parent = parent;
+			this.board = board;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.remainingDepth = remainingDepth;
+			this.isRoot = isRoot;
+			this.siblingIndex = siblingIndex;
+			this.firstCutoffIndex = firstCutoffIndex;
+			this.nodeBestMove = Move.NO_MOVE;
+		}
+
+		private boolean isAborted() {
+			// A sibling ordered before this task or one of its ancestors has
+			// already produced a cutoff, so this subtree can no longer change
+			// the result.
+			for (SplitTask task = this; task != null; task = task.parent) {
+				if (task.firstCutoffIndex != null && task.firstCutoffIndex.get() < task.siblingIndex) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (isAborted()) {
+				return AlphaBetaPruning.END_SEARCH;
+			}
+
+			int value = computeValue();
+
+			if (firstCutoffIndex != null && value != AlphaBetaPruning.END_SEARCH && value <= alpha) {
+				firstCutoffIndex.accumulateAndGet(siblingIndex, Math::min);
+			}
+
+			return value;
+		}
+
+		private int computeValue() {
+			if (remainingDepth < minSplitDepth && !isRoot) {
+				return serialSearch(board, alpha, beta, remainingDepth, nodesSincePoll.get());
+			}
+
+			if (isStopped(nodesSincePoll.get()) || searchedNodes.sum() >= maxNodes) {
+				return AlphaBetaPruning.END_SEARCH;
+			}
+
+			searchedNodes.increment();
+
+			if (!isRoot && endgameDatabase != null) {
+				int endgameValue = endgameDatabase.probe(board);
+
+				if (endgameValue != EndgameDatabase.UNKNOWN) {
+					return AlphaBetaPruning.getEndgameSearchValue(endgameValue);
+				}
+			}
+
+			// The moves are still needed after the forks, while a joining thread may run
+			// other split nodes of the same depth, so they are copied out of its buffer.
+			int[] moveBuffer = getBuffer(movesPerDepth, remainingDepth)[remainingDepth];
+			int numberOfValidMoves = board.generateMoves(moveBuffer,
+					getBuffer(scoresPerDepth, remainingDepth)[remainingDepth], moveEvaluationFunction);
+			int[] validMoves = Arrays.copyOf(moveBuffer, numberOfValidMoves);
+			if (board.getRemainingPiecesOfCurrentPlayer() < 3 || numberOfValidMoves == 0) {
+				return -AlphaBetaPruning.WIN_BOARD_VALUE;
+			}
+
+			if (remainingDepth == 0) {
+				return AlphaBetaPruning.evaluateBoard(board);
+			}
+
+			int firstMove = validMoves[0];
+			board.makeMove(firstMove);
+
+			int nodeBestValue = -new SplitTask(this, board, -beta, -alpha, remainingDepth - 1, false, 0, null).compute();
+
+			board.undoMove(firstMove);
+
+			if (Math.abs(nodeBestValue) == AlphaBetaPruning.END_SEARCH) {
+				return AlphaBetaPruning.END_SEARCH;
+			}
+
+			nodeBestMove = firstMove;
+
+			int siblingsAlpha = Math.max(alpha, nodeBestValue);
+			if (siblingsAlpha >= beta || numberOfValidMoves == 1) {
+				return nodeBestValue;
+			}
+
+			AtomicInteger siblingsFirstCutoffIndex = new AtomicInteger(Integer.MAX_VALUE);
+			List<SplitTask> siblings = new ArrayList<SplitTask>(numberOfValidMoves - 1);
+
+			for (int i = 1; i < numberOfValidMoves; i++) {
+				BoardState siblingBoard = new BoardState(board);
+				siblingBoard.makeMove(validMoves[i]);
+
+				siblings.add(new SplitTask(this, siblingBoard, -beta, -siblingsAlpha, remainingDepth - 1,
+						false, i, siblingsFirstCutoffIndex));
+			}
+
+			for (SplitTask sibling : siblings) {
+				sibling.fork();
+			}
+
+			// Siblings are joined in move order, so the combined result only
+			// depends on the values of the siblings up to the first cutoff,
+			// none of which can have been aborted.
+			boolean isStopped = false;
+
+			for (int i = 0; i < siblings.size(); i++) {
+				int value = -siblings.get(i).join();
+
+				if (isStopped) {
+					continue;
+				}
+
+				if (Math.abs(value) == AlphaBetaPruning.END_SEARCH) {
+					isStopped = true;
+					continue;
+				}
+
+				if (value > nodeBestValue) {
+					nodeBestValue = value;
+					nodeBestMove = validMoves[i + 1];
+				}
+
+				if (value >= beta) {
+					isStopped = true;
+				}
+			}
+
+			if (isStopped && nodeBestValue < beta) {
+				return AlphaBetaPruning.END_SEARCH;
+			}
+
+			return nodeBestValue;
+		}
+	}
+}
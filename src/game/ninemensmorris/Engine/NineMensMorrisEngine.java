@@ -0,0 +1,415 @@
+package game.ninemensmorris.Engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Algorithms.AlphaBetaPruning.ParallelMode;
+import game.ninemensmorris.Algorithms.EndgameDatabase;
+import game.ninemensmorris.Algorithms.OpeningBook;
+import game.ninemensmorris.Algorithms.ReductionTable;
+import game.ninemensmorris.Algorithms.SearchProgressCallback;
+import game.ninemensmorris.Algorithms.SearchStatistics;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Headless engine driven by a UCI-like text protocol over stdin/stdout, so
+ * that the AI can run without a display, be driven by tournament managers
+ * and be load tested. Only depends on the model and algorithm packages, so
+ * no AWT or Swing classes are loaded.
+ *
+ * Commands:
+ *   uci                              identify the engine and list its options
+ *   isready                          answered with readyok
+ *   newgame                          reset the position, keeping the transposition table
+ *   setoption name N value V         Threads, Hash (MB), ParallelMode, CanonicalKeys,
+ *                                    PVS, AspirationWindow, MoveOrdering,
+ *                                    LateMoveReductions, ReductionTable,
+ *                                    QuiescenceDepth, EndgamePath, BookFile or HashFile
+ *   setoption name ClearHash         clear the transposition table
+ *   position startpos [moves m...]   set up the start position and play moves
+ *   position board B S W K [moves m...]
+ *                                    set up a position in BoardState notation
+ *   go [depth N] [movetime MS] [nodes N] [infinite]
+ *                                    search, printing info lines and a bestmove
+ *   stop                             stop the running search
+ *   d                                print the current position
+ *   quit                             exit
+ *
+ * Moves use the notation of Move.parse, e.g. "4", "3-4" or "3-4x16". Like in
+ * UCI, the search runs in the background; all commands except stop, isready,
+ * d and quit first wait for a running search to finish.
+ *
+ * The transposition table is kept across games. If HashFile is set, a
+ * snapshot of the table is loaded from that file if it exists and written
+ * back on quit, so a restarted engine starts with a warm table.
+ */
+public class NineMensMorrisEngine {
+	private static final String NAME = "Nine Men's Morris";
+	private static final int MAX_SEARCH_DEPTH = 64;
+	private static final int DEFAULT_MAX_TIME = Integer.MAX_VALUE;
+
+	private final PrintStream out;
+	private final ExecutorService searchExecutor;
+	private final AlphaBetaPruning solver;
+	private BoardState position;
+	private Future<?> currentSearch;
+	private File hashFile;
+
+	public NineMensMorrisEngine(PrintStream out) {
+		this.out = out;
+		this.searchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "engine-search");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.position = new BoardState();
+		this.solver = new AlphaBetaPruning(position, MAX_SEARCH_DEPTH, DEFAULT_MAX_TIME);
+		this.solver.setSearchProgressCallback(new SearchProgressCallback() {
+			@Override
+			public void onDepthCompleted(int depth, int value, long nodes, long timeInNanos, List<Move> principalVariation) {
+				StringBuilder info = new StringBuilder();
+
+				info.append("info depth ").append(depth);
+				info.append(" score ").append(value);
+				info.append(" nodes ").append(nodes);
+				info.append(" nps ").append(nodes * 1000000000L / Math.max(timeInNanos, 1));
+				info.append(" time ").append(timeInNanos / 1000000);
+
+				if (!principalVariation.isEmpty()) {
+					info.append(" pv");
+
+					for (Move move : principalVariation) {
+						info.append(' ').append(move);
+					}
+				}
+
+				send(info.toString());
+			}
+		});
+	}
+
+	private synchronized void send(String line) {
+		out.println(line);
+		out.flush();
+	}
+
+	private synchronized boolean isSearching() {
+		return currentSearch != null && !currentSearch.isDone();
+	}
+
+	private void waitForSearch() {
+		Future<?> search;
+
+		synchronized (this) {
+			search = currentSearch;
+		}
+
+		if (search != null) {
+			try {
+				search.get();
+			} catch (Exception e) {
+				send("info string search failed: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Executes a single protocol command and returns false once the engine
+	 * should exit.
+	 */
+	public boolean execute(String line) {
+		String[] tokens = line.trim().split("\\s+");
+
+		if (tokens.length == 0 || tokens[0].isEmpty()) {
+			return true;
+		}
+
+		try {
+			switch (tokens[0]) {
+				case "uci":
+					send("id name " + NAME);
+					send("option name Threads type spin default 1 min 1 max 256");
+					send("option name Hash type spin default " + solver.getTranspositionTableSize() + " min 1 max 65536");
+					send("option name ParallelMode type combo default LAZY_SMP var LAZY_SMP var YOUNG_BROTHERS_WAIT");
+					send("option name CanonicalKeys type check default false");
+					send("option name PVS type check default " + solver.isUsingPrincipalVariationSearch());
+					send("option name AspirationWindow type spin default " + solver.getAspirationWindow() + " min 0 max 1000");
+					send("option name MoveOrdering type check default " + solver.isUsingMoveOrderingHeuristics());
+					send("option name LateMoveReductions type check default " + solver.isUsingLateMoveReductions());
+					send("option name ReductionTable type string default " + solver.getReductionTable());
+					send("option name QuiescenceDepth type spin default " + solver.getQuiescenceDepth() + " min 0 max 16");
+					send("option name EndgamePath type string default <empty>");
+					send("option name BookFile type string default <empty>");
+					send("option name HashFile type string default <empty>");
+					send("option name ClearHash type button");
+					send("uciok");
+					break;
+				case "isready":
+					send("readyok");
+					break;
+				case "newgame":
+					waitForSearch();
+					position = new BoardState();
+					break;
+				case "setoption":
+					waitForSearch();
+					setOption(tokens);
+					break;
+				case "position":
+					waitForSearch();
+					setPosition(tokens);
+					break;
+				case "go":
+					waitForSearch();
+					go(tokens);
+					break;
+				case "stop":
+					stopSearch();
+					break;
+				case "d":
+					send(position.toString());
+					break;
+				case "quit":
+					stopSearch();
+					saveHashFile();
+					return false;
+				default:
+					send("info string unknown command: " + tokens[0]);
+					break;
+			}
+		} catch (IllegalArgumentException e) {
+			send("info string " + e.getMessage());
+		}
+
+		return true;
+	}
+
+	private void stopSearch() {
+		if (isSearching()) {
+			solver.terminateSearch();
+		}
+
+		waitForSearch();
+	}
+
+	private void setOption(String[] tokens) {
+		if (tokens.length == 3 && tokens[1].equals("name") && tokens[2].equals("ClearHash")) {
+			solver.clearTranspositionTable();
+			return;
+		}
+
+		if (tokens.length < 5 || !tokens[1].equals("name") || !tokens[3].equals("value")) {
+			throw new IllegalArgumentException("usage: setoption name <name> value <value>");
+		}
+
+		switch (tokens[2]) {
+			case "Threads":
+				solver.setNumberOfThreads(Integer.parseInt(tokens[4]));
+				break;
+			case "Hash":
+				solver.setTranspositionTableSize(Integer.parseInt(tokens[4]));
+				break;
+			case "ParallelMode":
+				solver.setParallelMode(ParallelMode.valueOf(tokens[4]));
+				break;
+			case "CanonicalKeys":
+				solver.setUseCanonicalKeys(Boolean.parseBoolean(tokens[4]));
+				break;
+			case "PVS":
+				solver.setUsePrincipalVariationSearch(Boolean.parseBoolean(tokens[4]));
+				break;
+			case "AspirationWindow":
+				solver.setAspirationWindow(Integer.parseInt(tokens[4]));
+				break;
+			case "MoveOrdering":
+				solver.setUseMoveOrderingHeuristics(Boolean.parseBoolean(tokens[4]));
+				break;
+			case "LateMoveReductions":
+				solver.setUseLateMoveReductions(Boolean.parseBoolean(tokens[4]));
+				break;
+			case "ReductionTable":
+				solver.setReductionTable(ReductionTable.parse(tokens[4]));
+				break;
+			case "QuiescenceDepth":
+				solver.setQuiescenceDepth(Integer.parseInt(tokens[4]));
+				break;
+			case "EndgamePath":
+				setEndgamePath(String.join(" ", Arrays.copyOfRange(tokens, 4, tokens.length)));
+				break;
+			case "BookFile":
+				setBookFile(String.join(" ", Arrays.copyOfRange(tokens, 4, tokens.length)));
+				break;
+			case "HashFile":
+				setHashFile(String.join(" ", Arrays.copyOfRange(tokens, 4, tokens.length)));
+				break;
+			default:
+				throw new IllegalArgumentException("unknown option: " + tokens[2]);
+		}
+	}
+
+	private void setEndgamePath(String path) {
+		if (path.equals("<empty>")) {
+			solver.setEndgameDatabase(null);
+			return;
+		}
+
+		try {
+			EndgameDatabase database = EndgameDatabase.open(new File(path));
+
+			if (database.isEmpty()) {
+				throw new IllegalArgumentException("no endgame database found in " + path);
+			}
+
+			solver.setEndgameDatabase(database);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("can not load endgame database: " + e.getMessage());
+		}
+	}
+
+	private void setBookFile(String path) {
+		if (path.equals("<empty>")) {
+			solver.setOpeningBook(null);
+			return;
+		}
+
+		try {
+			solver.setOpeningBook(OpeningBook.load(new File(path)));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("can not load opening book: " + e.getMessage());
+		}
+	}
+
+	private void setHashFile(String path) {
+		if (path.equals("<empty>")) {
+			hashFile = null;
+			return;
+		}
+
+		hashFile = new File(path);
+
+		if (hashFile.isFile()) {
+			try {
+				solver.loadTranspositionTable(hashFile);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("can not load transposition table: " + e.getMessage());
+			}
+		}
+	}
+
+	private void saveHashFile() {
+		if (hashFile != null) {
+			try {
+				solver.saveTranspositionTable(hashFile);
+			} catch (IOException e) {
+				send("info string can not save transposition table: " + e.getMessage());
+			}
+		}
+	}
+
+	private void setPosition(String[] tokens) {
+		int index;
+		BoardState newPosition;
+
+		if (tokens.length >= 2 && tokens[1].equals("startpos")) {
+			newPosition = new BoardState();
+			index = 2;
+		} else if (tokens.length >= 6 && tokens[1].equals("board")) {
+			newPosition = BoardState.parse(tokens[2] + " " + tokens[3] + " " + tokens[4] + " " + tokens[5]);
+			index = 6;
+		} else {
+			throw new IllegalArgumentException("usage: position startpos|board <notation> [moves <move>...]");
+		}
+
+		if (index < tokens.length) {
+			if (!tokens[index].equals("moves")) {
+				throw new IllegalArgumentException("expected moves instead of " + tokens[index]);
+			}
+
+			for (index++; index < tokens.length; index++) {
+				Move move = Move.parse(tokens[index]);
+
+				if (newPosition.hasCurrentPlayerLost() || !newPosition.isMoveLegal(move)) {
+					throw new IllegalArgumentException("invalid move: " + tokens[index]);
+				}
+
+				newPosition.makeMove(move);
+			}
+		}
+
+		position = newPosition;
+	}
+
+	private void go(String[] tokens) {
+		int maxDepth = MAX_SEARCH_DEPTH;
+		int maxTime = DEFAULT_MAX_TIME;
+		long maxNodes = Long.MAX_VALUE;
+
+		for (int i = 1; i < tokens.length; i++) {
+			switch (tokens[i]) {
+				case "depth":
+					maxDepth = Math.max(1, Math.min(MAX_SEARCH_DEPTH, Integer.parseInt(tokens[++i])));
+					break;
+				case "movetime":
+					maxTime = Integer.parseInt(tokens[++i]);
+					break;
+				case "nodes":
+					maxNodes = Long.parseLong(tokens[++i]);
+					break;
+				case "infinite":
+					break;
+				default:
+					throw new IllegalArgumentException("unknown go parameter: " + tokens[i]);
+			}
+		}
+
+		solver.setBoardState(new BoardState(position));
+		solver.setMaxDepth(maxDepth);
+		solver.setMaxTime(maxTime);
+		solver.setMaxNodes(maxNodes);
+
+		synchronized (this) {
+			currentSearch = searchExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					Move bestMove = solver.searchForBestMove();
+					SearchStatistics statistics = solver.getLastSearchStatistics();
+
+					if (statistics.getNumberOfReducedSearches() > 0) {
+						send("info string reduced searches " + statistics.getNumberOfReducedSearches()
+								+ " researched " + statistics.getNumberOfReSearches());
+					}
+
+					send("bestmove " + (bestMove == null ? "none" : bestMove.toString()));
+				}
+			});
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		NineMensMorrisEngine engine = new NineMensMorrisEngine(System.out);
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		String line;
+
+		while ((line = in.readLine()) != null) {
+			if (!engine.execute(line)) {
+				break;
+			}
+		}
+
+		engine.stopSearch();
+	}
+}
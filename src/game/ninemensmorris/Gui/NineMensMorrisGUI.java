@@ -2,13 +2,24 @@ package game.ninemensmorris.Gui;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
 
 import javax.swing.border.EmptyBorder;
 
 import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Algorithms.EndgameDatabase;
+import game.ninemensmorris.Algorithms.OpeningBook;
+import game.ninemensmorris.Algorithms.SearchExecutor;
+import game.ninemensmorris.Algorithms.SearchResult;
+import game.ninemensmorris.Algorithms.TranspositionTable;
 import game.ninemensmorris.Models.BoardState;
 import game.ninemensmorris.Models.Move;
 import javax.swing.*;
@@ -83,7 +94,11 @@ public class NineMensMorrisGUI extends JFrame {
 
     private JLabel statusLabel;
     private AlphaBetaPruning solver;
+    private EndgameDatabase endgameDatabase; // Solved endgames from the "endgame" directory, if generated
+    private OpeningBook openingBook; // Book moves from the "opening.book" file, if generated
     private volatile MoveExecutorCallback moveExecutor;
+    // Runs the CPU's searches, one at a time, so an abandoned search stops before the next one starts
+    private final SearchExecutor searchExecutor = new SearchExecutor("cpu-search", 1, SearchExecutor.DEFAULT_QUEUE_CAPACITY);
     private boolean pvpMode = true; // Default to PvP mode
     private int currentPlayer = 0; // 0 for player 1, 1 for player 2
     private int maxDepth = 30;
@@ -93,10 +108,56 @@ public class NineMensMorrisGUI extends JFrame {
     private class MoveExecutor implements MoveExecutorCallback {
         
         private boolean terminate = false;
+        private CompletableFuture<SearchResult> search; // The CPU's move or, while pondering, the predicted position
+        private int ponderMove = Move.NO_MOVE;
 
         public synchronized void terminate() {
             this.terminate = true;
-            solver.terminateSearch();
+            // Abandons the search at once instead of letting it run out its time
+            if (search != null) {
+                search.cancel(true);
+                search = null;
+            }
+        }
+
+        // Plays the result on the search thread, also if the search has already finished.
+        // A cancelled search was abandoned on purpose, any other failure ends the game.
+        private void playSearchResult(CompletableFuture<SearchResult> search) {
+            search.whenComplete(new BiConsumer<SearchResult, Throwable>() {
+                @Override
+                public void accept(final SearchResult result, Throwable throwable) {
+                    if (throwable instanceof CancellationException) {
+                        return;
+                    }
+
+                    if (throwable == null) {
+                        try {
+                            searchExecutor.execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    MoveExecutor.this.makeMove(result.getBestMove());
+                                }
+                            });
+                            return;
+                        } catch (RejectedExecutionException e) {
+                            throwable = e;
+                        }
+                    }
+
+                    searchFailed(throwable);
+                }
+            });
+        }
+
+        private synchronized void searchFailed(Throwable throwable) {
+            if (terminate) {
+                return;
+            }
+
+            terminate();
+            stopPondering();
+            gameEnded = true;
+            statusLabel.setText("The CPU's search failed: " + throwable);
         }
         
 
@@ -141,41 +202,84 @@ public class NineMensMorrisGUI extends JFrame {
                 // Allow the CPU to make a move in PvCPU mode
                 if (currentPlayer == 1 && !pvpMode) { 
                     statusLabel.setText("Making A Move...");
-                    int maxDepth = 5;
-                    int maxTime = 5 * 1000;
-                    switch (difficulty) {
-                        case "Easy":
-                            maxDepth = 5; 
-                            maxTime = 5000;
-                            break;
-                        case "Medium":
-                            maxDepth = 10; 
-                            maxTime = 10000; 
-                            break;
-                        case "Hard":
-                            maxDepth = 15;
-                            maxTime = 15000;
-                            break;
-                        default:
-                            maxDepth = 5; 
-                            maxTime = 5000;
-                            break;
-                    }
-                    
-        
-                    solver.setMaxDepth(maxDepth);
-                    solver.setMaxTime(maxTime);
+                    configureSolver();
         
-                    new Thread(new Runnable() {
-                        @Override
-                        public void run() {
-                            Move move = solver.searchForBestMove();
-                            MoveExecutor.this.makeMove(move);
-                        }
-                    }).start();
+                    if (search != null && move.toPackedMove() == ponderMove) {
+                        // Ponder hit: the running search already is on the right position
+                        // and now only has to finish within the normal time limit
+                        solver.ponderHit();
+                        ponderMove = Move.NO_MOVE;
+                        playSearchResult(search);
+                    } else {
+                        // Ponder miss: the search starts over, but with the warmed transposition table
+                        stopPondering();
+                        search = solver.searchAsync(currentGame, searchExecutor);
+                        playSearchResult(search);
+                    }
+                } else if (currentPlayer == 0 && !pvpMode) {
+                    startPondering();
                 }
             }
         }
+
+        private void configureSolver() {
+            int maxDepth = 5;
+            int maxTime = 5 * 1000;
+            switch (difficulty) {
+                case "Easy":
+                    maxDepth = 5; 
+                    maxTime = 5000;
+                    break;
+                case "Medium":
+                    maxDepth = 10; 
+                    maxTime = 10000; 
+                    break;
+                case "Hard":
+                    maxDepth = 15;
+                    maxTime = 15000;
+                    break;
+                default:
+                    maxDepth = 5; 
+                    maxTime = 5000;
+                    break;
+            }
+
+            solver.setMaxDepth(maxDepth);
+            solver.setMaxTime(maxTime);
+        }
+
+        // Predicts the human's reply from the principal variation of the last search
+        // and searches the resulting position while the human is thinking
+        private void startPondering() {
+            search = null; // The CPU's move search, which has just been played
+            ponderMove = Move.NO_MOVE;
+            solver.setBoardState(new BoardState(currentGame));
+            List<Move> principalVariation = solver.getPrincipalVariation(1);
+            if (principalVariation.isEmpty()) {
+                return;
+            }
+
+            Move predictedMove = principalVariation.get(0);
+            BoardState ponderGame = new BoardState(currentGame);
+            ponderGame.makeMove(predictedMove);
+            if (ponderGame.hasCurrentPlayerLost()) {
+                return;
+            }
+
+            configureSolver();
+            solver.setPondering(true);
+            ponderMove = predictedMove.toPackedMove();
+            search = solver.searchAsync(ponderGame, searchExecutor);
+        }
+
+        private void stopPondering() {
+            if (search != null) {
+                search.cancel(true);
+                search = null;
+            }
+            ponderMove = Move.NO_MOVE;
+            solver.setPondering(false);
+        }
         
     }
 
@@ -190,7 +294,15 @@ public class NineMensMorrisGUI extends JFrame {
         currentPlayer = 0; // Reset currentPlayer to 0 (player 1's turn)
         statusLabel.setText("Player 1's move");
 
+        // Keep the transposition table of earlier games, its entries age out
+        TranspositionTable transpositionTable = solver != null ? solver.getTranspositionTable() : null;
         solver = new AlphaBetaPruning(currentGame, maxDepth, maxTime);
+        if (transpositionTable != null) {
+            solver.setTranspositionTable(transpositionTable);
+        }
+        solver.setNumberOfThreads(Runtime.getRuntime().availableProcessors());
+        solver.setEndgameDatabase(endgameDatabase);
+        solver.setOpeningBook(openingBook);
         boardPanel.makeMove();
     }
 
@@ -230,6 +342,34 @@ public class NineMensMorrisGUI extends JFrame {
 
         add(mainPanel);
         cardLayout.show(mainPanel, "Main Menu");
+
+        loadEndgameDatabase();
+        loadOpeningBook();
+    }
+
+    private void loadEndgameDatabase() {
+        File directory = new File("endgame");
+
+        if (directory.isDirectory()) {
+            try {
+                EndgameDatabase database = EndgameDatabase.open(directory);
+                endgameDatabase = database.isEmpty() ? null : database;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void loadOpeningBook() {
+        File file = new File("opening.book");
+
+        if (file.isFile()) {
+            try {
+                openingBook = OpeningBook.load(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     private void createMainMenuPanel() {
@@ -4,13 +4,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 public class BoardState {
 	public static final int NUMBER_OF_POSITIONS = 24;
 	public static final int NUMBER_OF_STARTING_PIECES = 9;
 	public static final boolean IS_FLYING_ALLOWED = false;
+	// Safe upper bound on the number of moves of any position, flying with captures included.
+	public static final int MAX_NUMBER_OF_MOVES = NUMBER_OF_POSITIONS * NUMBER_OF_POSITIONS;
 	
 	public static final List<List<Integer>> POSITION_TO_NEIGHBOURS;
 	private static final Integer[][] positionToNeighboursArray = {
@@ -77,42 +77,131 @@ public class BoardState {
 		POSSIBLE_MILLS = Collections.unmodifiableList(possMills);
 	}
 	
-	private static long[] powersOf3;
+	public static final int ALL_POSITIONS_MASK = (1 << NUMBER_OF_POSITIONS) - 1;
+	
+	private static final String PLAYER_SYMBOLS = ".WB";
+	
+	private static final int[] positionToNeighboursMask;
+	private static final int[] millsMask;
+	private static final int[][] positionToMillsMask;
+	
+	static {
+		positionToNeighboursMask = new int[NUMBER_OF_POSITIONS];
+		
+		for (int i = 0; i < positionToNeighboursArray.length; i++) {
+			for (int neighbour : positionToNeighboursArray[i]) {
+				positionToNeighboursMask[i] |= 1 << neighbour;
+			}
+		}
+		
+		millsMask = new int[possibleMillsArrsy.length];
+		positionToMillsMask = new int[NUMBER_OF_POSITIONS][2];
+		int[] positionToNumberOfMills = new int[NUMBER_OF_POSITIONS];
+		
+		for (int i = 0; i < possibleMillsArrsy.length; i++) {
+			for (int position : possibleMillsArrsy[i]) {
+				millsMask[i] |= 1 << position;
+			}
+			
+			for (int position : possibleMillsArrsy[i]) {
+				positionToMillsMask[position][positionToNumberOfMills[position]++] = millsMask[i];
+			}
+		}
+	}
+	
+	private static final long[][] zobristPositionKeys;
+	private static final long[][] zobristUnputPiecesKeys;
+	private static final long[][] zobristRemainingPiecesKeys;
+	private static final long zobristOtherPlayerKey;
 	
 	static {
-		powersOf3 = new long[64];
-		powersOf3[0] = 1;
+		// Fixed seed, so that board IDs are stable across runs and can be persisted.
+		long seed = 0x4E696E654D656E73L;
+		
+		zobristPositionKeys = new long[2][NUMBER_OF_POSITIONS];
+		zobristUnputPiecesKeys = new long[2][NUMBER_OF_STARTING_PIECES + 1];
+		zobristRemainingPiecesKeys = new long[2][NUMBER_OF_STARTING_PIECES + 1];
 		
-		for (int i = 1; i < powersOf3.length; i++) {
-			powersOf3[i] = powersOf3[i - 1]  * 3;
+		for (int player = 0; player < 2; player++) {
+			for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+				zobristPositionKeys[player][i] = seed = nextZobristKey(seed);
+			}
+			
+			for (int i = 0; i <= NUMBER_OF_STARTING_PIECES; i++) {
+				zobristUnputPiecesKeys[player][i] = seed = nextZobristKey(seed);
+				zobristRemainingPiecesKeys[player][i] = seed = nextZobristKey(seed);
+			}
 		}
+		
+		zobristOtherPlayerKey = nextZobristKey(seed);
+	}
+	
+	private static long nextZobristKey(long previous) {
+		long result = previous + 0x9E3779B97F4A7C15L;
+		
+		result = (result ^ (result >>> 30)) * 0xBF58476D1CE4E5B9L;
+		result = (result ^ (result >>> 27)) * 0x94D049BB133111EBL;
+		
+		return result ^ (result >>> 31);
 	}
 	
-	private int[] positionsState;
+	private int[] playerToPositionsMask;
 	private int currentPlayer;
 	private int[] playerToUnputPieces;
 	private int[] playerToRemainingPieces;
+	private int[] playerToNumberOfMills;
+	private int[] playerToNumberOfAdjacentMoves;
 	private long boardID;
 	
 	public BoardState() {
-		positionsState = new int[24];
-		for (int i = 0; i < positionsState.length; i++) {
-			positionsState[i] = 0;
-		}
+		playerToPositionsMask = new int[2];
 		
 		currentPlayer = 0;
 		playerToUnputPieces = new int[2];
 		playerToUnputPieces[0] = playerToUnputPieces[1] = NUMBER_OF_STARTING_PIECES;
 		playerToRemainingPieces = new int[2];
 		playerToRemainingPieces[0] = playerToRemainingPieces[1] = NUMBER_OF_STARTING_PIECES;
-		boardID = 0;
+		playerToNumberOfMills = new int[2];
+		playerToNumberOfAdjacentMoves = new int[2];
+		boardID = computeBoardID();
+	}
+	
+	public BoardState(int[] playerToPositionsMask, int currentPlayer, int[] playerToUnputPieces) {
+		if (playerToPositionsMask.length != 2 || playerToUnputPieces.length != 2
+				|| (playerToPositionsMask[0] & playerToPositionsMask[1]) != 0
+				|| ((playerToPositionsMask[0] | playerToPositionsMask[1]) & ~ALL_POSITIONS_MASK) != 0
+				|| currentPlayer < 0 || currentPlayer > 1) {
+			throw new IllegalArgumentException();
+		}
+		
+		this.playerToPositionsMask = playerToPositionsMask.clone();
+		this.currentPlayer = currentPlayer;
+		this.playerToUnputPieces = playerToUnputPieces.clone();
+		this.playerToRemainingPieces = new int[2];
+		this.playerToNumberOfMills = new int[2];
+		this.playerToNumberOfAdjacentMoves = new int[2];
+		
+		for (int player = 0; player < 2; player++) {
+			playerToRemainingPieces[player] = Integer.bitCount(playerToPositionsMask[player]) + playerToUnputPieces[player];
+			
+			if (playerToUnputPieces[player] < 0 || playerToRemainingPieces[player] > NUMBER_OF_STARTING_PIECES) {
+				throw new IllegalArgumentException();
+			}
+			
+			playerToNumberOfMills[player] = computeNumberOfMills(player);
+			playerToNumberOfAdjacentMoves[player] = computeNumberOfAdjacentMoves(player);
+		}
+		
+		boardID = computeBoardID();
 	}
 	
 	public BoardState(BoardState state) {
-		positionsState = state.positionsState.clone();
+		playerToPositionsMask = state.playerToPositionsMask.clone();
 		currentPlayer = state.currentPlayer;
 		playerToUnputPieces = state.playerToUnputPieces.clone();
 		playerToRemainingPieces = state.playerToRemainingPieces.clone();
+		playerToNumberOfMills = state.playerToNumberOfMills.clone();
+		playerToNumberOfAdjacentMoves = state.playerToNumberOfAdjacentMoves.clone();
 		boardID = state.boardID;
 	}
 	
@@ -121,7 +210,86 @@ public class BoardState {
 			throw new IllegalArgumentException();
 		}
 
-		return positionsState[position];
+		return getPositionStateUnchecked(position);
+	}
+	
+	private int getPositionStateUnchecked(int position) {
+		int bit = 1 << position;
+
+		if ((playerToPositionsMask[0] & bit) != 0) {
+			return 1;
+		} else if ((playerToPositionsMask[1] & bit) != 0) {
+			return 2;
+		}
+		
+		return 0;
+	}
+	
+	public static int getNeighboursMask(int position) {
+		return positionToNeighboursMask[position];
+	}
+	
+	/**
+	 * Returns whether the piece on {@code position} is part of a mill formed
+	 * by the pieces of {@code positionsMask}.
+	 */
+	public static boolean isPositionInMill(int positionsMask, int position) {
+		int[] millsOfPosition = positionToMillsMask[position];
+		
+		return (positionsMask & millsOfPosition[0]) == millsOfPosition[0]
+				|| (positionsMask & millsOfPosition[1]) == millsOfPosition[1];
+	}
+	
+	public static int getMillPiecesMaskOf(int positionsMask) {
+		int result = 0;
+		
+		for (int millMask : millsMask) {
+			if ((positionsMask & millMask) == millMask) {
+				result |= millMask;
+			}
+		}
+		
+		return result;
+	}
+	
+	public int getPositionsMaskOfPlayer(int player) {
+		return playerToPositionsMask[player];
+	}
+	
+	public int getEmptyPositionsMask() {
+		return ~(playerToPositionsMask[0] | playerToPositionsMask[1]) & ALL_POSITIONS_MASK;
+	}
+	
+	public int getNumberOfMills(int player) {
+		return playerToNumberOfMills[player];
+	}
+	
+	public int getNumberOfAdjacentMoves(int player) {
+		return playerToNumberOfAdjacentMoves[player];
+	}
+	
+	private int computeNumberOfMills(int player) {
+		int positionsMask = playerToPositionsMask[player];
+		int result = 0;
+		
+		for (int millMask : millsMask) {
+			if ((positionsMask & millMask) == millMask) {
+				result++;
+			}
+		}
+		
+		return result;
+	}
+	
+	private int computeNumberOfAdjacentMoves(int player) {
+		int emptyMask = getEmptyPositionsMask();
+		int result = 0;
+		
+		for (int pieces = playerToPositionsMask[player]; pieces != 0; pieces &= pieces - 1) {
+			result += Integer.bitCount(positionToNeighboursMask[Integer.numberOfTrailingZeros(pieces)] & emptyMask);
+		}
+		
+		return result;
 	}
 
 	public int getCurrentPlayer() {
@@ -160,142 +328,296 @@ public class BoardState {
 		return boardID;
 	}
 	
+	/**
+	 * Returns the board ID of this position transformed by the given
+	 * symmetry (see {@link BoardSymmetry}).
+	 */
+	public long getBoardID(int symmetry) {
+		if (symmetry == BoardSymmetry.IDENTITY) {
+			return boardID;
+		}
+		
+		long result = boardID;
+		
+		for (int player = 0; player < 2; player++) {
+			for (int pieces = playerToPositionsMask[player]; pieces != 0; pieces &= pieces - 1) {
+				int position = Integer.numberOfTrailingZeros(pieces);
+				
+				result ^= zobristPositionKeys[player][position]
+						^ zobristPositionKeys[player][BoardSymmetry.getPosition(symmetry, position)];
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the symmetry that maps this position to its canonical form, the
+	 * image with the smallest mask of white pieces and, among those, the
+	 * smallest mask of black pieces. Equivalent positions have the same
+	 * canonical form.
+	 */
+	public int getCanonicalSymmetry() {
+		int whiteMask = playerToPositionsMask[0];
+		int blackMask = playerToPositionsMask[1];
+		int result = BoardSymmetry.IDENTITY;
+		
+		for (int symmetry = 1; symmetry < BoardSymmetry.NUMBER_OF_SYMMETRIES; symmetry++) {
+			int symmetricWhiteMask = BoardSymmetry.apply(symmetry, playerToPositionsMask[0]);
+			
+			if (symmetricWhiteMask > whiteMask) {
+				continue;
+			}
+			
+			int symmetricBlackMask = BoardSymmetry.apply(symmetry, playerToPositionsMask[1]);
+			
+			if (symmetricWhiteMask < whiteMask || symmetricBlackMask < blackMask) {
+				whiteMask = symmetricWhiteMask;
+				blackMask = symmetricBlackMask;
+				result = symmetry;
+			}
+		}
+		
+		return result;
+	}
+	
+	public long getCanonicalBoardID() {
+		return getBoardID(getCanonicalSymmetry());
+	}
+	
+	private long computeBoardID() {
+		long result = 0;
+		
+		for (int player = 0; player < 2; player++) {
+			for (int pieces = playerToPositionsMask[player]; pieces != 0; pieces &= pieces - 1) {
+				result ^= zobristPositionKeys[player][Integer.numberOfTrailingZeros(pieces)];
+			}
+			
+			result ^= zobristUnputPiecesKeys[player][playerToUnputPieces[player]];
+			result ^= zobristRemainingPiecesKeys[player][playerToRemainingPieces[player]];
+		}
+		
+		if (currentPlayer == 1) {
+			result ^= zobristOtherPlayerKey;
+		}
+		
+		return result;
+	}
+	
 	public boolean hasCurrentPlayerLost() {
 		return getRemainingPiecesOfCurrentPlayer() < 3
-				|| getValidMoves(null).isEmpty();
+				|| !hasValidMoves();
+	}
+	
+	public boolean hasValidMoves() {
+		int emptyMask = getEmptyPositionsMask();
+		
+		if (getUnputPiecesOfCurrentPlayer() > 0 || isCurrentPlayerFlying()) {
+			return emptyMask != 0;
+		}
+		
+		for (int pieces = playerToPositionsMask[currentPlayer]; pieces != 0; pieces &= pieces - 1) {
+			if ((positionToNeighboursMask[Integer.numberOfTrailingZeros(pieces)] & emptyMask) != 0) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private boolean isCurrentPlayerFlying() {
+		return getRemainingPiecesOfCurrentPlayer() <= 3 && IS_FLYING_ALLOWED;
 	}
 	
 	private void decreaseUnputPiecesOfCurrentPlayer() {
-		boardID -= (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
+		boardID ^= zobristUnputPiecesKeys[currentPlayer][playerToUnputPieces[currentPlayer]];
 		
 		playerToUnputPieces[currentPlayer]--;
 		
-		boardID += (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
-		
+		boardID ^= zobristUnputPiecesKeys[currentPlayer][playerToUnputPieces[currentPlayer]];
 	}
 	
 	private void increaseUnputPiecesOfCurrentPlayer() {
-		boardID -= (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
+		boardID ^= zobristUnputPiecesKeys[currentPlayer][playerToUnputPieces[currentPlayer]];
 		
 		playerToUnputPieces[currentPlayer]++;
 		
-		boardID += (NUMBER_OF_STARTING_PIECES * 2
-				- playerToUnputPieces[0] - playerToUnputPieces[1])
-				* powersOf3[NUMBER_OF_POSITIONS + 1];
+		boardID ^= zobristUnputPiecesKeys[currentPlayer][playerToUnputPieces[currentPlayer]];
+	}
+	
+	private void decreaseRemainingPiecesOfOtherPlayer() {
+		int otherPlayer = getOtherPlayer();
+		
+		boardID ^= zobristRemainingPiecesKeys[otherPlayer][playerToRemainingPieces[otherPlayer]];
+		
+		playerToRemainingPieces[otherPlayer]--;
+		
+		boardID ^= zobristRemainingPiecesKeys[otherPlayer][playerToRemainingPieces[otherPlayer]];
+	}
+	
+	private void increaseRemainingPiecesOfOtherPlayer() {
+		int otherPlayer = getOtherPlayer();
+		
+		boardID ^= zobristRemainingPiecesKeys[otherPlayer][playerToRemainingPieces[otherPlayer]];
+		
+		playerToRemainingPieces[otherPlayer]++;
+		
+		boardID ^= zobristRemainingPiecesKeys[otherPlayer][playerToRemainingPieces[otherPlayer]];
+	}
+	
+	private int getNumberOfMillsThroughPosition(int position, int player) {
+		int positionsMask = playerToPositionsMask[player];
+		int[] millsOfPosition = positionToMillsMask[position];
+		int result = 0;
+		
+		if ((positionsMask & millsOfPosition[0]) == millsOfPosition[0]) {
+			result++;
+		}
+		
+		if ((positionsMask & millsOfPosition[1]) == millsOfPosition[1]) {
+			result++;
+		}
 		
+		return result;
 	}
 	
 	private void removeFromBoard(int position) {
-		boardID -= positionsState[position] * powersOf3[position];
+		int player = (playerToPositionsMask[0] & (1 << position)) != 0 ? 0 : 1;
+		int neighboursMask = positionToNeighboursMask[position];
+		
+		boardID ^= zobristPositionKeys[player][position];
+		playerToNumberOfMills[player] -= getNumberOfMillsThroughPosition(position, player);
+		playerToNumberOfAdjacentMoves[player] -= Integer.bitCount(neighboursMask & getEmptyPositionsMask());
+		
+		playerToPositionsMask[player] &= ~(1 << position);
 		
-		positionsState[position] = 0;
+		playerToNumberOfAdjacentMoves[0] += Integer.bitCount(neighboursMask & playerToPositionsMask[0]);
+		playerToNumberOfAdjacentMoves[1] += Integer.bitCount(neighboursMask & playerToPositionsMask[1]);
 	}
 	
 	private void putOnBoard(int position, int player) {
-		positionsState[position] = player + 1;
+		int neighboursMask = positionToNeighboursMask[position];
 		
-		boardID += positionsState[position] * powersOf3[position];
+		playerToNumberOfAdjacentMoves[0] -= Integer.bitCount(neighboursMask & playerToPositionsMask[0]);
+		playerToNumberOfAdjacentMoves[1] -= Integer.bitCount(neighboursMask & playerToPositionsMask[1]);
+		
+		playerToPositionsMask[player] |= 1 << position;
+		
+		boardID ^= zobristPositionKeys[player][position];
+		playerToNumberOfMills[player] += getNumberOfMillsThroughPosition(position, player);
+		playerToNumberOfAdjacentMoves[player] += Integer.bitCount(neighboursMask & getEmptyPositionsMask());
 	}
 	
 	private void tooglePlayer() {
-		boardID -= currentPlayer * powersOf3[NUMBER_OF_STARTING_PIECES];
+		boardID ^= zobristOtherPlayerKey;
 		
 		currentPlayer = getOtherPlayer();
-		
-		boardID += currentPlayer * powersOf3[NUMBER_OF_STARTING_PIECES];
 	}
 	
 	public void makeMove(Move move) {
-		if (move.getFromPosition() == -1) {
+		makeMove(move.getFromPosition(), move.getToPosition(), move.getPositionOfTakenPiece());
+	}
+	
+	public void makeMove(int packedMove) {
+		makeMove(Move.unpackFromPosition(packedMove), Move.unpackToPosition(packedMove),
+				Move.unpackPositionOfTakenPiece(packedMove));
+	}
+	
+	private void makeMove(int fromPosition, int toPosition, int positionOfTakenPiece) {
+		if (fromPosition == -1) {
 			decreaseUnputPiecesOfCurrentPlayer();
 		} else {
-			removeFromBoard(move.getFromPosition());
+			removeFromBoard(fromPosition);
 		}
 		
-		putOnBoard(move.getToPosition(), currentPlayer);
+		putOnBoard(toPosition, currentPlayer);
 		
-		if (move.getPositionOfTakenPiece() != -1) {
-			removeFromBoard(move.getPositionOfTakenPiece());
-			playerToRemainingPieces[getOtherPlayer()]--;
+		if (positionOfTakenPiece != -1) {
+			removeFromBoard(positionOfTakenPiece);
+			decreaseRemainingPiecesOfOtherPlayer();
 		}
 		
 		tooglePlayer();
 	}
 	
 	public void undoMove(Move move) {
+		undoMove(move.getFromPosition(), move.getToPosition(), move.getPositionOfTakenPiece());
+	}
+	
+	public void undoMove(int packedMove) {
+		undoMove(Move.unpackFromPosition(packedMove), Move.unpackToPosition(packedMove),
+				Move.unpackPositionOfTakenPiece(packedMove));
+	}
+	
+	private void undoMove(int fromPosition, int toPosition, int positionOfTakenPiece) {
 		tooglePlayer();
 
-		if (move.getFromPosition() == -1) {
+		if (fromPosition == -1) {
 			increaseUnputPiecesOfCurrentPlayer();
 		} else {
-			putOnBoard(move.getFromPosition(), currentPlayer);
+			putOnBoard(fromPosition, currentPlayer);
 		}
 		
-		removeFromBoard(move.getToPosition());
+		removeFromBoard(toPosition);
 		
-		if (move.getPositionOfTakenPiece() != -1) {
-			putOnBoard(move.getPositionOfTakenPiece(), getOtherPlayer());
-			playerToRemainingPieces[getOtherPlayer()]++;
+		if (positionOfTakenPiece != -1) {
+			putOnBoard(positionOfTakenPiece, getOtherPlayer());
+			increaseRemainingPiecesOfOtherPlayer();
 		}
 	}
 	
+	private int getMillPiecesMask(int player) {
+		return getMillPiecesMaskOf(playerToPositionsMask[player]);
+	}
+	
 	public boolean areAllPiecesFromMill(int player) {
-		for (int i = 0; i < positionsState.length; i++) {
-			if (positionsState[i] == player + 1 && !doesPieceCompleteMill(-1, i, player)) {
-				return false;
-			}
-		}
-		
-		return true;
+		return (playerToPositionsMask[player] & ~getMillPiecesMask(player)) == 0;
 	}
 	
 	public boolean doesPieceCompleteMill(int removeFromPosition, int position, int player) {
-		int positionState =  player + 1;
-
-		for (List<Integer> millCoords : POSSIBLE_MILLS) {
-			if (millCoords.contains(position)) {
-				boolean result = true;
-				for (int i : millCoords) {
-					if (i == removeFromPosition) {
-						result = false;
-					} else if (i != position && positionsState[i] != positionState) {
-						result = false;
-					}
-				}
-				if (result) {
-					return true;
-				}
-			}
+		if (position == -1) {
+			return false;
 		}
 		
-		return false;
+		int positionsMask = playerToPositionsMask[player] | (1 << position);
+		
+		if (removeFromPosition != -1) {
+			positionsMask &= ~(1 << removeFromPosition);
+		}
+		
+		return isPositionInMill(positionsMask, position);
 	}
 	
 	public boolean isPieceFromMill(int position) {
-		if (positionsState[position] != 0) {
-			return doesPieceCompleteMill(-1, position, positionsState[position] - 1);
+		int positionState = getPositionStateUnchecked(position);
+		
+		if (positionState != 0) {
+			return doesPieceCompleteMill(-1, position, positionState - 1);
 		}
 		
 		return false;
 	}
 	
-	public boolean isMoveValid(Move move) {
-		if (positionsState[move.getToPosition()] != 0) {
+	public boolean isMoveValid(int packedMove) {
+		int fromPosition = Move.unpackFromPosition(packedMove);
+		int toPosition = Move.unpackToPosition(packedMove);
+		int positionOfTakenPiece = Move.unpackPositionOfTakenPiece(packedMove);
+		
+		if (toPosition == -1 || toPosition >= NUMBER_OF_POSITIONS
+				|| fromPosition >= NUMBER_OF_POSITIONS || positionOfTakenPiece >= NUMBER_OF_POSITIONS) {
+			return false;
+		}
+		
+		if (getPositionStateUnchecked(toPosition) != 0) {
 			return false;
 		}
 			
-		if (move.getFromPosition() != -1) {
-			if (positionsState[move.getFromPosition()] - 1 != currentPlayer) {
+		if (fromPosition != -1) {
+			if (getPositionStateUnchecked(fromPosition) - 1 != currentPlayer) {
 				return false;
 			}
 			if ((getRemainingPiecesOfCurrentPlayer() > 3 || !IS_FLYING_ALLOWED)
-					&& !POSITION_TO_NEIGHBOURS.get(move.getFromPosition()).contains(move.getToPosition())) {
+					&& (positionToNeighboursMask[fromPosition] & (1 << toPosition)) == 0) {
 				return false;
 			}
 			if (getUnputPiecesOfCurrentPlayer() > 0) {
@@ -307,12 +629,12 @@ public class BoardState {
 			}
 		}
 		
-		if (move.getPositionOfTakenPiece() != -1) {
-			if (positionsState[move.getPositionOfTakenPiece()] - 1 != getOtherPlayer()) {
+		if (positionOfTakenPiece != -1) {
+			if (getPositionStateUnchecked(positionOfTakenPiece) - 1 != getOtherPlayer()) {
 				return false;
 			}
 			
-			if (isPieceFromMill(move.getPositionOfTakenPiece()) && !areAllPiecesFromMill(getOtherPlayer())) {
+			if (isPieceFromMill(positionOfTakenPiece) && !areAllPiecesFromMill(getOtherPlayer())) {
 				return false;
 			}
 		}
@@ -320,157 +642,221 @@ public class BoardState {
 		return true;
 	}
 	
-	private static final class ValuedMove implements Comparable<ValuedMove> {
-		private Move move;
-		private int value;
+	public boolean isMoveValid(Move move) {
+		return isMoveValid(move.toPackedMove());
+	}
+	
+	/**
+	 * Returns whether the move is valid and takes a piece exactly if it closes
+	 * a mill. {@link #isMoveValid(int)} leaves the capture to the caller, e.g.
+	 * the board, which asks for the piece to take after the move.
+	 */
+	public boolean isMoveLegal(int packedMove) {
+		return isMoveValid(packedMove)
+				&& (Move.unpackPositionOfTakenPiece(packedMove) != -1) == doesPieceCompleteMill(
+						Move.unpackFromPosition(packedMove), Move.unpackToPosition(packedMove), currentPlayer);
+	}
+	
+	public boolean isMoveLegal(Move move) {
+		return isMoveLegal(move.toPackedMove());
+	}
+	
+	private int addPossibleMillTakes(int[] moves, int numberOfMoves, int fromPosition, int toPosition) {
+		int takeablePieces = playerToPositionsMask[getOtherPlayer()];
+		int notFromMillPieces = takeablePieces & ~getMillPiecesMask(getOtherPlayer());
 		
-		public ValuedMove(Move move, int value) {
-			this.move = move;
-			this.value = value;
+		if (notFromMillPieces != 0) {
+			takeablePieces = notFromMillPieces;
 		}
 		
-		@Override
-		public int hashCode() {
-			final int prime = 31;
-			int result = 1;
-			result = prime * result + ((move == null) ? 0 : move.hashCode());
-			result = prime * result + value;
-			return result;
+		for (; takeablePieces != 0; takeablePieces &= takeablePieces - 1) {
+			moves[numberOfMoves++] = Move.pack(fromPosition, toPosition, Integer.numberOfTrailingZeros(takeablePieces));
 		}
-
-		@Override
-		public boolean equals(Object obj) {
-			if (this == obj) {
-				return true;
-			}
-			if (obj == null) {
-				return false;
-			}
-			if (getClass() != obj.getClass()) {
-				return false;
+		
+		return numberOfMoves;
+	}
+	
+	private int addMove(int[] moves, int numberOfMoves, int fromPosition, int toPosition) {
+		if (doesPieceCompleteMill(fromPosition, toPosition, currentPlayer)) {
+			return addPossibleMillTakes(moves, numberOfMoves, fromPosition, toPosition);
+		}
+		
+		moves[numberOfMoves] = Move.pack(fromPosition, toPosition, -1);
+		
+		return numberOfMoves + 1;
+	}
+	
+	/**
+	 * Writes all valid moves of the current player into {@code moves} as packed
+	 * moves (see {@link Move#pack(int, int, int)}) and returns their number.
+	 * Both arrays must hold at least {@link #MAX_NUMBER_OF_MOVES} elements.
+	 * If an evaluation function is given, the moves are sorted by descending
+	 * value and the values are written to the matching indices of {@code scores}.
+	 */
+	public int generateMoves(int[] moves, int[] scores, MoveEvaluationFunction evaluationFunction) {
+		int numberOfMoves = 0;
+		int emptyMask = getEmptyPositionsMask();
+		
+		if (getUnputPiecesOfCurrentPlayer() > 0) {
+			for (int empty = emptyMask; empty != 0; empty &= empty - 1) {
+				numberOfMoves = addMove(moves, numberOfMoves, -1, Integer.numberOfTrailingZeros(empty));
 			}
-			ValuedMove other = (ValuedMove) obj;
-			if (move == null) {
-				if (other.move != null) {
-					return false;
+		} else {
+			boolean isFlying = isCurrentPlayerFlying();
+			
+			for (int pieces = playerToPositionsMask[currentPlayer]; pieces != 0; pieces &= pieces - 1) {
+				int from = Integer.numberOfTrailingZeros(pieces);
+				int targets = isFlying ? emptyMask : positionToNeighboursMask[from] & emptyMask;
+				
+				for (; targets != 0; targets &= targets - 1) {
+					numberOfMoves = addMove(moves, numberOfMoves, from, Integer.numberOfTrailingZeros(targets));
 				}
-			} else if (!move.equals(other.move)) {
-				return false;
-			}
-			if (value != other.value) {
-				return false;
 			}
-			return true;
-		}
-
-		public Move getMove() {
-			return move;
 		}
 		
-		@SuppressWarnings("unused")
-		public int getValue() {
-			return value;
-		}
-
-		@Override
-		public int compareTo(ValuedMove o) {
-			if (value > o.value) {
-				return -1;
-			} else if (value < o.value) {
-				return 1;
-			} else if (move.hashCode() < o.move.hashCode()) {
-				return -1;
-			} else if (move.hashCode() > o.move.hashCode()) {
-				return 1;
-			} else if (move.getFromPosition() - o.move.getFromPosition() != 0) {
-				return move.getFromPosition() - o.move.getFromPosition();
-			} else if (move.getToPosition() - o.move.getToPosition() != 0) {
-				return move.getToPosition() - o.move.getToPosition();
-			} else if (move.getPositionOfTakenPiece() - o.move.getPositionOfTakenPiece() != 0) {
-				return move.getPositionOfTakenPiece() - o.move.getPositionOfTakenPiece();
-			} else {
-				return 0;
+		if (evaluationFunction == null) {
+			for (int i = 0; i < numberOfMoves; i++) {
+				scores[i] = 0;
 			}
+		} else {
+			for (int i = 0; i < numberOfMoves; i++) {
+				scores[i] = evaluationFunction.evaluate(this, moves[i]);
+			}
+			
+			sortMoves(moves, scores, numberOfMoves);
 		}
+		
+		return numberOfMoves;
 	}
 	
-	private void addPossibleMillTakes(SortedSet<ValuedMove> sortedMoves,
-			Move move, MoveEvaluationFunction evaluationFunction) {
-		boolean areAllOtherPlayerPiecesFromMill = areAllPiecesFromMill(getOtherPlayer());
-		
-		for (int i = 0; i < positionsState.length; i++) {
-			if (positionsState[i] == getOtherPlayer() + 1) {
-				if (areAllOtherPlayerPiecesFromMill || !doesPieceCompleteMill(-1, i, getOtherPlayer())) {
-					move = new Move(move.getFromPosition(), move.getToPosition(), i);
-					sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-				}
-			}
-		}
+	/**
+	 * Writes the valid moves that close a mill, one per piece that can be
+	 * taken, unsorted into {@code moves} and returns their number.
+	 */
+	public int generateMillMoves(int[] moves) {
+		return generateMoves(moves, true);
 	}
 	
-	public List<Move> getValidMoves(MoveEvaluationFunction evaluationFunction) {
-		if (evaluationFunction == null) {
-			evaluationFunction = new MoveEvaluationFunction() {
-				@Override
-				public int evaluate(BoardState boardState, Move move) {
-					return 0;
-				}
-			};
-		}
-
-		SortedSet<ValuedMove> sortedMoves = new TreeSet<ValuedMove>();
+	/**
+	 * Writes the valid moves that do not close a mill unsorted into
+	 * {@code moves} and returns their number.
+	 */
+	public int generateQuietMoves(int[] moves) {
+		return generateMoves(moves, false);
+	}
+	
+	private int generateMoves(int[] moves, boolean closingMill) {
+		int numberOfMoves = 0;
+		int emptyMask = getEmptyPositionsMask();
 		
 		if (getUnputPiecesOfCurrentPlayer() > 0) {
-			for (int i = 0; i < positionsState.length; i++) {
-				if (positionsState[i] == 0) {
-					Move move = new Move(i);
-					if (doesPieceCompleteMill(-1, i, currentPlayer)) {
-						addPossibleMillTakes(sortedMoves, move, evaluationFunction);
-					} else {
-						sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-					}
+			for (int empty = emptyMask; empty != 0; empty &= empty - 1) {
+				int to = Integer.numberOfTrailingZeros(empty);
+				
+				if (doesPieceCompleteMill(-1, to, currentPlayer) == closingMill) {
+					numberOfMoves = addMove(moves, numberOfMoves, -1, to);
 				}
 			}
 		} else {
-			if (getRemainingPiecesOfCurrentPlayer() > 3 || !IS_FLYING_ALLOWED) {
-				for (int i = 0; i < positionsState.length; i++) {
-					if (positionsState[i] == currentPlayer + 1) {
-						for (int neighbour : POSITION_TO_NEIGHBOURS.get(i)) {
-							if (positionsState[neighbour] == 0) {
-								Move move = new Move(i, neighbour);
-								if (doesPieceCompleteMill(i, neighbour, currentPlayer)) {
-									addPossibleMillTakes(sortedMoves, move, evaluationFunction);
-								} else {
-									sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-								}
-							}
-						}
-					}
-				}
-			} else {
-				for (int i = 0; i < positionsState.length; i++) {
-					if (positionsState[i] == currentPlayer + 1) {
-						for (int j = 0; j < positionsState.length; j++) {
-							if (positionsState[j] == 0) {
-								Move move = new Move(i, j);
-								if (doesPieceCompleteMill(i, j, currentPlayer)) {
-									addPossibleMillTakes(sortedMoves, move, evaluationFunction);
-								} else {
-									sortedMoves.add(new ValuedMove(move, evaluationFunction.evaluate(this, move)));
-								}
-							}
-						}
+			boolean isFlying = isCurrentPlayerFlying();
+			
+			for (int pieces = playerToPositionsMask[currentPlayer]; pieces != 0; pieces &= pieces - 1) {
+				int from = Integer.numberOfTrailingZeros(pieces);
+				int targets = isFlying ? emptyMask : positionToNeighboursMask[from] & emptyMask;
+				
+				for (; targets != 0; targets &= targets - 1) {
+					int to = Integer.numberOfTrailingZeros(targets);
+					
+					if (doesPieceCompleteMill(from, to, currentPlayer) == closingMill) {
+						numberOfMoves = addMove(moves, numberOfMoves, from, to);
 					}
 				}
 			}
 		}
 		
-		List<Move> result = new ArrayList<Move>();
+		return numberOfMoves;
+	}
+	
+	private static void sortMoves(int[] moves, int[] scores, int numberOfMoves) {
+		for (int i = 1; i < numberOfMoves; i++) {
+			int move = moves[i];
+			int score = scores[i];
+			int j = i - 1;
+			
+			while (j >= 0 && scores[j] < score) {
+				moves[j + 1] = moves[j];
+				scores[j + 1] = scores[j];
+				j--;
+			}
+			
+			moves[j + 1] = move;
+			scores[j + 1] = score;
+		}
+	}
+	
+	public List<Move> getValidMoves(MoveEvaluationFunction evaluationFunction) {
+		int[] moves = new int[MAX_NUMBER_OF_MOVES];
+		int numberOfMoves = generateMoves(moves, new int[MAX_NUMBER_OF_MOVES], evaluationFunction);
+		List<Move> result = new ArrayList<Move>(numberOfMoves);
 		
-		for (ValuedMove valuedMove : sortedMoves) {
-			result.add(valuedMove.getMove());
+		for (int i = 0; i < numberOfMoves; i++) {
+			result.add(Move.unpack(moves[i]));
 		}
 		
 		return result;
 	}
+	
+	/**
+	 * Parses the notation produced by {@link #toString()}: one character per
+	 * position ('.' empty, 'W' first player, 'B' second player), the player to
+	 * move and the number of unput pieces of both players, e.g.
+	 * {@code "........................ W 9 9"}.
+	 */
+	public static BoardState parse(String notation) {
+		String[] parts = notation.trim().split("\\s+");
+		
+		if (parts.length != 4 || parts[0].length() != NUMBER_OF_POSITIONS) {
+			throw new IllegalArgumentException("Invalid board notation: " + notation);
+		}
+		
+		int[] positionsMask = new int[2];
+		
+		for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+			int player = PLAYER_SYMBOLS.indexOf(parts[0].charAt(i));
+			
+			if (player == -1) {
+				throw new IllegalArgumentException("Invalid board notation: " + notation);
+			} else if (player > 0) {
+				positionsMask[player - 1] |= 1 << i;
+			}
+		}
+		
+		int currentPlayer = PLAYER_SYMBOLS.indexOf(parts[1]) - 1;
+		
+		if (parts[1].length() != 1 || currentPlayer < 0) {
+			throw new IllegalArgumentException("Invalid board notation: " + notation);
+		}
+		
+		try {
+			return new BoardState(positionsMask, currentPlayer,
+					new int[] {Integer.parseInt(parts[2]), Integer.parseInt(parts[3])});
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid board notation: " + notation, e);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		
+		for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+			result.append(PLAYER_SYMBOLS.charAt(getPositionStateUnchecked(i)));
+		}
+		
+		result.append(' ').append(PLAYER_SYMBOLS.charAt(currentPlayer + 1));
+		result.append(' ').append(playerToUnputPieces[0]);
+		result.append(' ').append(playerToUnputPieces[1]);
+		
+		return result.toString();
+	}
 }
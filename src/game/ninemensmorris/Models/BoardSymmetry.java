@@ -0,0 +1,148 @@
+package game.ninemensmorris.Models;
+
+/**
+ * The 16 symmetries of the board: four rotations, each optionally mirrored,
+ * and each of these optionally with the inner and the outer ring swapped.
+ * All of them map neighbours to neighbours and mills to mills.
+ *
+ * A symmetry is numbered by its rotation in quarter turns (bits 0 and 1),
+ * whether it mirrors the board (bit 2) and whether it swaps the rings (bit 3).
+ */
+public final class BoardSymmetry {
+	public static final int NUMBER_OF_SYMMETRIES = 16;
+	public static final int IDENTITY = 0;
+	
+	// Positions of the outer, middle and inner ring, clockwise from the top left corner.
+	private static final int[][] RINGS = {
+		{0, 1, 2, 14, 23, 22, 21, 9},
+		{3, 4, 5, 13, 20, 19, 18, 10},
+		{6, 7, 8, 12, 17, 16, 15, 11},
+	};
+	private static final int RING_SIZE = 8;
+	
+	private static final int[][] permutations;
+	private static final int[] inverses;
+	private static final int[][][] byteToMask;
+	
+	static {
+		int[] positionToRing = new int[BoardState.NUMBER_OF_POSITIONS];
+		int[] positionToIndexInRing = new int[BoardState.NUMBER_OF_POSITIONS];
+		
+		for (int ring = 0; ring < RINGS.length; ring++) {
+			for (int i = 0; i < RING_SIZE; i++) {
+				positionToRing[RINGS[ring][i]] = ring;
+				positionToIndexInRing[RINGS[ring][i]] = i;
+			}
+		}
+		
+		permutations = new int[NUMBER_OF_SYMMETRIES][BoardState.NUMBER_OF_POSITIONS];
+		
+		for (int symmetry = 0; symmetry < NUMBER_OF_SYMMETRIES; symmetry++) {
+			int rotation = symmetry & 3;
+			boolean isMirrored = (symmetry & 4) != 0;
+			boolean areRingsSwapped = (symmetry & 8) != 0;
+			
+			for (int position = 0; position < BoardState.NUMBER_OF_POSITIONS; position++) {
+				int ring = positionToRing[position];
+				int index = positionToIndexInRing[position];
+				
+				if (isMirrored) {
+					index = (RING_SIZE - index) % RING_SIZE;
+				}
+				
+				index = (index + 2 * rotation) % RING_SIZE;
+				
+				if (areRingsSwapped) {
+					ring = RINGS.length - 1 - ring;
+				}
+				
+				permutations[symmetry][position] = RINGS[ring][index];
+			}
+		}
+		
+		inverses = new int[NUMBER_OF_SYMMETRIES];
+		
+		for (int symmetry = 0; symmetry < NUMBER_OF_SYMMETRIES; symmetry++) {
+			candidateLoop:
+			for (int candidate = 0; candidate < NUMBER_OF_SYMMETRIES; candidate++) {
+				for (int position = 0; position < BoardState.NUMBER_OF_POSITIONS; position++) {
+					if (permutations[candidate][permutations[symmetry][position]] != position) {
+						continue candidateLoop;
+					}
+				}
+				
+				inverses[symmetry] = candidate;
+			}
+		}
+		
+		byteToMask = new int[NUMBER_OF_SYMMETRIES][3][256];
+		
+		for (int symmetry = 0; symmetry < NUMBER_OF_SYMMETRIES; symmetry++) {
+			for (int part = 0; part < 3; part++) {
+				for (int bits = 0; bits < 256; bits++) {
+					int mask = 0;
+					
+					for (int bit = 0; bit < 8; bit++) {
+						if ((bits & (1 << bit)) != 0) {
+							mask |= 1 << permutations[symmetry][8 * part + bit];
+						}
+					}
+					
+					byteToMask[symmetry][part][bits] = mask;
+				}
+			}
+		}
+	}
+	
+	private BoardSymmetry() {
+	}
+	
+	public static int getPosition(int symmetry, int position) {
+		return position == -1 ? -1 : permutations[symmetry][position];
+	}
+	
+	/**
+	 * Maps the positions of a packed move (see {@link Move#pack(int, int, int)}).
+	 */
+	public static int applyToMove(int symmetry, int packedMove) {
+		if (packedMove == Move.NO_MOVE) {
+			return Move.NO_MOVE;
+		}
+		
+		return Move.pack(getPosition(symmetry, Move.unpackFromPosition(packedMove)),
+				getPosition(symmetry, Move.unpackToPosition(packedMove)),
+				getPosition(symmetry, Move.unpackPositionOfTakenPiece(packedMove)));
+	}
+	
+	public static int apply(int symmetry, int positionsMask) {
+		int[][] tables = byteToMask[symmetry];
+		
+		return tables[0][positionsMask & 0xFF]
+				| tables[1][(positionsMask >>> 8) & 0xFF]
+				| tables[2][(positionsMask >>> 16) & 0xFF];
+	}
+	
+	public static int getInverse(int symmetry) {
+		return inverses[symmetry];
+	}
+	
+	/**
+	 * Returns the symmetry that maps the given pieces to the numerically
+	 * smallest mask, the lowest such symmetry if there are several.
+	 */
+	public static int getCanonicalSymmetry(int positionsMask) {
+		int result = IDENTITY;
+		int smallestMask = positionsMask;
+		
+		for (int symmetry = 1; symmetry < NUMBER_OF_SYMMETRIES; symmetry++) {
+			int mask = apply(symmetry, positionsMask);
+			
+			if (mask < smallestMask) {
+				smallestMask = mask;
+				result = symmetry;
+			}
+		}
+		
+		return result;
+	}
+}
@@ -1,6 +1,11 @@
 package game.ninemensmorris.Models;
 
 public final class Move {
+	public static final int NO_MOVE = -1;
+	
+	private static final int POSITION_BITS = 5;
+	private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+	
 	private final int fromPosition;
 	private final int toPosition;
 	private final int positionOfTakenPiece;
@@ -88,4 +93,95 @@ public final class Move {
 	public int getPositionOfTakenPiece() {
 		return positionOfTakenPiece;
 	}
+
+	public int toPackedMove() {
+		return pack(fromPosition, toPosition, positionOfTakenPiece);
+	}
+	
+	public static Move unpack(int packedMove) {
+		int fromPosition = unpackFromPosition(packedMove);
+		int positionOfTakenPiece = unpackPositionOfTakenPiece(packedMove);
+		
+		if (positionOfTakenPiece == -1) {
+			return new Move(fromPosition, unpackToPosition(packedMove));
+		}
+		
+		return new Move(fromPosition, unpackToPosition(packedMove), positionOfTakenPiece);
+	}
+	
+	public static int pack(int fromPosition, int toPosition, int positionOfTakenPiece) {
+		return (fromPosition & POSITION_MASK)
+				| (toPosition & POSITION_MASK) << POSITION_BITS
+				| (positionOfTakenPiece & POSITION_MASK) << (2 * POSITION_BITS);
+	}
+	
+	public static int unpackFromPosition(int packedMove) {
+		return unpackPosition(packedMove);
+	}
+	
+	public static int unpackToPosition(int packedMove) {
+		return unpackPosition(packedMove >>> POSITION_BITS);
+	}
+	
+	public static int unpackPositionOfTakenPiece(int packedMove) {
+		return unpackPosition(packedMove >>> (2 * POSITION_BITS));
+	}
+	
+	private static int unpackPosition(int bits) {
+		int position = bits & POSITION_MASK;
+		
+		return position == POSITION_MASK ? -1 : position;
+	}
+	
+	/**
+	 * Parses the notation produced by {@link #toString()}: the target position
+	 * preceded by "from-" for moves and followed by "xtaken" for captures,
+	 * e.g. "4", "3-4" or "3-4x16".
+	 */
+	public static Move parse(String notation) {
+		try {
+			int fromPosition = -1;
+			int positionOfTakenPiece = -1;
+			String rest = notation.trim();
+			
+			int takenIndex = rest.indexOf('x');
+			if (takenIndex != -1) {
+				positionOfTakenPiece = Integer.parseInt(rest.substring(takenIndex + 1));
+				rest = rest.substring(0, takenIndex);
+			}
+			
+			int fromIndex = rest.indexOf('-');
+			if (fromIndex != -1) {
+				fromPosition = Integer.parseInt(rest.substring(0, fromIndex));
+				rest = rest.substring(fromIndex + 1);
+			}
+			
+			int toPosition = Integer.parseInt(rest);
+			
+			if (positionOfTakenPiece == -1) {
+				return new Move(fromPosition, toPosition);
+			}
+			
+			return new Move(fromPosition, toPosition, positionOfTakenPiece);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid move notation: " + notation, e);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		
+		if (fromPosition != -1) {
+			result.append(fromPosition).append('-');
+		}
+		
+		result.append(toPosition);
+		
+		if (positionOfTakenPiece != -1) {
+			result.append('x').append(positionOfTakenPiece);
+		}
+		
+		return result.toString();
+	}
 }
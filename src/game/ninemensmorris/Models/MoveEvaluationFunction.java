@@ -2,4 +2,8 @@ package game.ninemensmorris.Models;
 
 public interface MoveEvaluationFunction {
 	public int evaluate(BoardState boardState, Move move);
+	
+	public default int evaluate(BoardState boardState, int packedMove) {
+		return evaluate(boardState, Move.unpack(packedMove));
+	}
 }
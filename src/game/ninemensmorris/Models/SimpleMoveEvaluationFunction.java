@@ -3,25 +3,32 @@ package game.ninemensmorris.Models;
 public class SimpleMoveEvaluationFunction implements MoveEvaluationFunction {
 	@Override
 	public int evaluate(BoardState boardState, Move move) {
-		if (boardState.doesPieceCompleteMill(move.getFromPosition(), move.getToPosition(), boardState.getCurrentPlayer())) {
+		return evaluate(boardState, move.getFromPosition(), move.getToPosition());
+	}
+	
+	@Override
+	public int evaluate(BoardState boardState, int packedMove) {
+		return evaluate(boardState, Move.unpackFromPosition(packedMove), Move.unpackToPosition(packedMove));
+	}
+	
+	private int evaluate(BoardState boardState, int fromPosition, int toPosition) {
+		if (boardState.doesPieceCompleteMill(fromPosition, toPosition, boardState.getCurrentPlayer())) {
 			return 9;
 		}
 		
-		if (boardState.doesPieceCompleteMill(move.getFromPosition(), move.getToPosition(), boardState.getOtherPlayer())) {
-			for (int neighbour : BoardState.POSITION_TO_NEIGHBOURS.get(move.getToPosition())) {
-				if (boardState.getPositionState(neighbour) == boardState.getOtherPlayer() + 1) {
-					return 8;
-				}
+		int otherPlayerMask = boardState.getPositionsMaskOfPlayer(boardState.getOtherPlayer());
+		
+		if (boardState.doesPieceCompleteMill(fromPosition, toPosition, boardState.getOtherPlayer())) {
+			if ((BoardState.getNeighboursMask(toPosition) & otherPlayerMask) != 0) {
+				return 8;
 			}
 			
 			return 4;
 		}
 		
-		if (boardState.doesPieceCompleteMill(-1, move.getFromPosition(), boardState.getOtherPlayer())) {
-			for (int neighbour : BoardState.POSITION_TO_NEIGHBOURS.get(move.getFromPosition())) {
-				if (boardState.getPositionState(neighbour) == boardState.getOtherPlayer() + 1) {
-					return -2;
-				}
+		if (boardState.doesPieceCompleteMill(-1, fromPosition, boardState.getOtherPlayer())) {
+			if ((BoardState.getNeighboursMask(fromPosition) & otherPlayerMask) != 0) {
+				return -2;
 			}
 			
 			return -1;
@@ -0,0 +1,426 @@
+package game.ninemensmorris.Server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Algorithms.EndgameDatabase;
+import game.ninemensmorris.Algorithms.OpeningBook;
+import game.ninemensmorris.Algorithms.SearchExecutor;
+import game.ninemensmorris.Algorithms.SearchResult;
+import game.ninemensmorris.Algorithms.TranspositionTable;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Headless HTTP server hosting many independent games at once, e.g. for a
+ * web front end or for load tests (see game.ninemensmorris.Tools.LoadGenerator).
+ *
+ * Every game is a {@link GameSession} with its own position and time budget.
+ * AI moves are searched on a shared {@link SearchExecutor} with one thread
+ * per core. Every search thread keeps one single-threaded solver for all
+ * sessions, so an idle session only costs its position, and all solvers share
+ * one transposition table, endgame database and opening book. Entries of one
+ * game therefore help others that reach the same positions, but every search
+ * starts a new table generation, so with many games the depth-preferred slots
+ * are replaced sooner than with a single game. When all search threads are
+ * busy and the queue is full, AI moves are refused with 503 instead of
+ * oversubscribing the cores. Requests are handled on virtual threads where
+ * available and never wait for a search; the answer of an AI move is sent
+ * when its search completes.
+ *
+ * Requests and answers are plain text; positions use the notation of
+ * BoardState.parse and moves that of Move.parse:
+ *   POST   /games[?movetime=MS][&budget=MS]
+ *                              create a game; movetime is the maximum time per
+ *                              AI move, budget that of all AI moves of the game
+ *   GET    /games/ID           print the position
+ *   POST   /games/ID/move?move=M
+ *                              play a move for the player to move
+ *   POST   /games/ID/go        search and play an AI move for the player to move
+ *   DELETE /games/ID           close the game, stopping its search
+ *   GET    /stats              print the number of games and the search queue
+ *
+ * Errors are answered with 400 for invalid input, 404 for unknown games, 409
+ * for games that are searching or over and 503 when the server is full.
+ * Idle games are closed after {@link #SESSION_TIMEOUT_MINUTES} minutes when
+ * the maximum number of games is reached.
+ *
+ * Usage: GameServer [--port N] [--threads N] [--queue N] [--hash MB]
+ *                   [--sessions N] [--endgame DIR] [--book FILE]
+ */
+public class GameServer {
+	public static final int DEFAULT_PORT = 8080;
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	public static final int DEFAULT_HASH_SIZE = 256;
+	public static final int DEFAULT_MAX_SESSIONS = 100000;
+	public static final int DEFAULT_MOVE_TIME = 100;
+	public static final int MAX_MOVE_TIME = 60000;
+	public static final int SESSION_TIMEOUT_MINUTES = 30;
+	
+	private static final int MAX_SEARCH_DEPTH = 64;
+	private static final int BACKLOG = 1024;
+	private static final String GAMES_PATH = "/games";
+	
+	static {
+		// The answers are small, so with Nagle's algorithm each would wait for the delayed ACK of the client.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+	
+	private final HttpServer httpServer;
+	private final ExecutorService requestExecutor;
+	private final SearchExecutor searchExecutor;
+	private final TranspositionTable transpositionTable;
+	private final EndgameDatabase endgameDatabase;
+	private final OpeningBook openingBook;
+	private final ThreadLocal<AlphaBetaPruning> solvers;
+	private final ConcurrentHashMap<Long, GameSession> sessions;
+	private final AtomicLong nextSessionId;
+	private final int maxSessions;
+	
+	/**
+	 * Creates a server on the given port of all interfaces (0 for any free
+	 * port); the endgame database and the opening book may be null.
+	 */
+	public GameServer(int port, int numberOfThreads, int queueCapacity, int hashSize, int maxSessions,
+			EndgameDatabase endgameDatabase, OpeningBook openingBook) throws IOException {
+		if (maxSessions < 1) {
+			throw new IllegalArgumentException("invalid maximum number of sessions: " + maxSessions);
+		}
+		
+		this.searchExecutor = new SearchExecutor("game-search", numberOfThreads, queueCapacity);
+		this.requestExecutor = SearchExecutor.newRequestExecutor("game-request");
+		this.transpositionTable = new TranspositionTable(hashSize);
+		this.endgameDatabase = endgameDatabase;
+		this.openingBook = openingBook;
+		this.solvers = new ThreadLocal<AlphaBetaPruning>() {
+			@Override
+			protected AlphaBetaPruning initialValue() {
+				return createSolver();
+			}
+		};
+		this.sessions = new ConcurrentHashMap<Long, GameSession>();
+		this.nextSessionId = new AtomicLong();
+		this.maxSessions = maxSessions;
+		
+		this.httpServer = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		this.httpServer.setExecutor(requestExecutor);
+		this.httpServer.createContext(GAMES_PATH, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleGameRequest(exchange);
+			}
+		});
+		this.httpServer.createContext("/stats", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, "sessions " + sessions.size() + "\nsearch " + searchExecutor + "\n");
+			}
+		});
+	}
+	
+	private AlphaBetaPruning createSolver() {
+		AlphaBetaPruning result = new AlphaBetaPruning(new BoardState(), MAX_SEARCH_DEPTH, DEFAULT_MOVE_TIME);
+		
+		result.setTranspositionTable(transpositionTable);
+		result.setEndgameDatabase(endgameDatabase);
+		result.setOpeningBook(openingBook);
+		
+		return result;
+	}
+	
+	public void start() {
+		httpServer.start();
+	}
+	
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+	
+	/**
+	 * Stops accepting requests and closes all games.
+	 */
+	public void stop() {
+		httpServer.stop(0);
+		
+		for (GameSession session : sessions.values()) {
+			session.close();
+		}
+		
+		sessions.clear();
+		searchExecutor.shutdown();
+		requestExecutor.shutdown();
+	}
+	
+	private void handleGameRequest(HttpExchange exchange) throws IOException {
+		try {
+			String[] path = exchange.getRequestURI().getPath().substring(GAMES_PATH.length()).split("/");
+			Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+			String method = exchange.getRequestMethod();
+			
+			if (path.length > 0 && !path[0].isEmpty()) {
+				send(exchange, 404, "unknown request\n");
+				return;
+			} else if (path.length <= 1) {
+				if (method.equals("POST")) {
+					createSession(exchange, parameters);
+				} else {
+					send(exchange, 405, "method not allowed\n");
+				}
+				
+				return;
+			}
+			
+			GameSession session = sessions.get(parseSessionId(path[1]));
+			
+			if (session == null) {
+				send(exchange, 404, "unknown game: " + path[1] + "\n");
+			} else if (path.length == 2 && method.equals("GET")) {
+				send(exchange, 200, "board " + session.getBoardState() + "\n");
+			} else if (path.length == 2 && method.equals("DELETE")) {
+				sessions.remove(session.getId());
+				session.close();
+				send(exchange, 200, "closed " + session.getId() + "\n");
+			} else if (path.length == 3 && path[2].equals("move") && method.equals("POST")) {
+				String move = parameters.get("move");
+				
+				if (move == null) {
+					throw new IllegalArgumentException("missing move");
+				}
+				
+				send(exchange, 200, "board " + session.playMove(Move.parse(move)) + "\n");
+			} else if (path.length == 3 && path[2].equals("go") && method.equals("POST")) {
+				search(exchange, session);
+			} else {
+				send(exchange, 404, "unknown request\n");
+			}
+		} catch (IllegalArgumentException e) {
+			send(exchange, 400, e.getMessage() + "\n");
+		} catch (IllegalStateException e) {
+			send(exchange, 409, e.getMessage() + "\n");
+		}
+	}
+	
+	private static long parseSessionId(String id) {
+		try {
+			return Long.parseLong(id);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> result = new HashMap<String, String>();
+		
+		if (query == null || query.isEmpty()) {
+			return result;
+		}
+		
+		for (String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			
+			if (separator == -1) {
+				throw new IllegalArgumentException("invalid parameter: " + parameter);
+			}
+			
+			result.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+					URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+		}
+		
+		return result;
+	}
+	
+	private static long getParameter(Map<String, String> parameters, String name, long defaultValue) {
+		String value = parameters.get(name);
+		
+		if (value == null) {
+			return defaultValue;
+		}
+		
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid " + name + ": " + value);
+		}
+	}
+	
+	private void createSession(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		long moveTime = getParameter(parameters, "movetime", DEFAULT_MOVE_TIME);
+		long budget = getParameter(parameters, "budget", GameSession.UNLIMITED_BUDGET);
+		
+		if (moveTime > MAX_MOVE_TIME) {
+			throw new IllegalArgumentException("movetime exceeds " + MAX_MOVE_TIME + " ms");
+		}
+		
+		if (sessions.size() >= maxSessions) {
+			closeIdleSessions();
+			
+			if (sessions.size() >= maxSessions) {
+				send(exchange, 503, "too many games\n");
+				return;
+			}
+		}
+		
+		GameSession session = new GameSession(nextSessionId.incrementAndGet(), (int) moveTime, budget);
+		
+		sessions.put(session.getId(), session);
+		send(exchange, 201, "game " + session.getId() + "\nboard " + session.getBoardState() + "\n");
+	}
+	
+	private void closeIdleSessions() {
+		long idleSince = System.nanoTime() - TimeUnit.MINUTES.toNanos(SESSION_TIMEOUT_MINUTES);
+		
+		for (Iterator<GameSession> iterator = sessions.values().iterator(); iterator.hasNext();) {
+			GameSession session = iterator.next();
+			
+			if (session.isIdleSince(idleSince)) {
+				iterator.remove();
+				session.close();
+			}
+		}
+	}
+	
+	private void search(final HttpExchange exchange, final GameSession session) throws IOException {
+		final BoardState position = session.startSearch();
+		final int maxTime = session.getSearchTime();
+		CompletableFuture<SearchResult> search;
+		
+		try {
+			search = CompletableFuture.supplyAsync(new Supplier<SearchResult>() {
+				@Override
+				public SearchResult get() {
+					return searchOnCurrentThread(session, position, maxTime);
+				}
+			}, searchExecutor);
+		} catch (RejectedExecutionException e) {
+			session.abortSearch();
+			send(exchange, 503, "search queue is full\n");
+			return;
+		}
+		
+		// The answer is written on a request thread, so that a slow client does not hold up a search thread.
+		search.whenCompleteAsync(new BiConsumer<SearchResult, Throwable>() {
+			@Override
+			public void accept(SearchResult result, Throwable throwable) {
+				try {
+					if (throwable != null) {
+						session.abortSearch();
+						send(exchange, 500, "search failed: " + throwable + "\n");
+					} else if (result == null) {
+						send(exchange, 409, "game " + session.getId() + " is closed\n");
+					} else {
+						send(exchange, 200, "bestmove " + (result.getBestMove() == null ? "none" : result.getBestMove())
+								+ " value " + result.getValue() + " depth " + result.getDepth()
+								+ " nodes " + result.getSearchedNodes() + " remaining " + session.getRemainingTime()
+								+ "\nboard " + session.getBoardState() + "\n");
+					}
+				} catch (IOException e) {
+					exchange.close();
+				}
+			}
+		}, requestExecutor);
+	}
+	
+	/**
+	 * Searches with the solver of the current search thread and plays the
+	 * best move, or returns null if the session has been closed before or
+	 * during the search.
+	 */
+	private SearchResult searchOnCurrentThread(GameSession session, BoardState position, int maxTime) {
+		AlphaBetaPruning solver = solvers.get();
+		
+		// Setting the position discards a stop request meant for the previous session, so it comes first.
+		solver.setBoardState(position);
+		solver.setMaxTime(maxTime);
+		
+		if (!session.beginSearch(solver)) {
+			return null;
+		}
+		
+		long startTime = System.nanoTime();
+		SearchResult result = null;
+		
+		try {
+			solver.searchForBestMove();
+			result = solver.getLastSearchResult();
+		} finally {
+			session.endSearch(result, System.nanoTime() - startTime);
+		}
+		
+		return session.isClosed() ? null : result;
+	}
+	
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(bytes);
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT;
+		int numberOfThreads = Runtime.getRuntime().availableProcessors();
+		int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+		int hashSize = DEFAULT_HASH_SIZE;
+		int maxSessions = DEFAULT_MAX_SESSIONS;
+		EndgameDatabase endgameDatabase = null;
+		OpeningBook openingBook = null;
+		
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+				case "--port":
+					port = Integer.parseInt(args[i + 1]);
+					break;
+				case "--threads":
+					numberOfThreads = Integer.parseInt(args[i + 1]);
+					break;
+				case "--queue":
+					queueCapacity = Integer.parseInt(args[i + 1]);
+					break;
+				case "--hash":
+					hashSize = Integer.parseInt(args[i + 1]);
+					break;
+				case "--sessions":
+					maxSessions = Integer.parseInt(args[i + 1]);
+					break;
+				case "--endgame":
+					endgameDatabase = EndgameDatabase.open(new File(args[i + 1]));
+					break;
+				case "--book":
+					openingBook = OpeningBook.load(new File(args[i + 1]));
+					break;
+				default:
+					throw new IllegalArgumentException("unknown option: " + args[i]);
+			}
+		}
+		
+		GameServer server = new GameServer(port, numberOfThreads, queueCapacity, hashSize, maxSessions,
+				endgameDatabase, openingBook);
+		
+		server.start();
+		System.out.println("listening on port " + server.getPort() + ", " + numberOfThreads + " search threads");
+	}
+}
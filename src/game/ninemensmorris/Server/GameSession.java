@@ -0,0 +1,177 @@
+package game.ninemensmorris.Server;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Algorithms.SearchResult;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * One game of the {@link GameServer}: its position and the time budget of
+ * its AI moves. A session does not own a solver; its searches run on the
+ * solver of whichever search thread picks them up, and at most one search
+ * of a session is queued or running at a time.
+ */
+final class GameSession {
+	public static final long UNLIMITED_BUDGET = Long.MAX_VALUE;
+	
+	private static final int NANOS_PER_MILLISECOND = 1000000;
+	
+	private final long id;
+	private final BoardState boardState;
+	private final int moveTime;
+	private long remainingTime;
+	private long lastAccessNanoTime;
+	private boolean isSearching;
+	private AlphaBetaPruning activeSolver;
+	private boolean isClosed;
+	
+	/**
+	 * Creates a session in the start position whose AI moves take at most
+	 * moveTime milliseconds each and budget milliseconds together.
+	 */
+	public GameSession(long id, int moveTime, long budget) {
+		if (moveTime < 1 || budget < 1) {
+			throw new IllegalArgumentException("invalid time control: movetime " + moveTime + ", budget " + budget);
+		}
+		
+		this.id = id;
+		this.boardState = new BoardState();
+		this.moveTime = moveTime;
+		this.remainingTime = budget;
+		this.lastAccessNanoTime = System.nanoTime();
+		this.isSearching = false;
+		this.activeSolver = null;
+		this.isClosed = false;
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public synchronized BoardState getBoardState() {
+		lastAccessNanoTime = System.nanoTime();
+		
+		return new BoardState(boardState);
+	}
+	
+	public synchronized long getRemainingTime() {
+		return remainingTime;
+	}
+	
+	public synchronized boolean isClosed() {
+		return isClosed;
+	}
+	
+	public synchronized boolean isIdleSince(long nanoTime) {
+		return !isSearching && lastAccessNanoTime - nanoTime < 0;
+	}
+	
+	/**
+	 * Plays a move for the player to move. Throws an IllegalArgumentException
+	 * if the move is not legal, including a move that closes a mill without
+	 * taking a piece or takes one without closing a mill, and an
+	 * IllegalStateException while an AI move is searched or after the game
+	 * has ended.
+	 */
+	public synchronized BoardState playMove(Move move) {
+		checkPlayable();
+		
+		if (!boardState.isMoveLegal(move)) {
+			throw new IllegalArgumentException("invalid move: " + move);
+		}
+		
+		boardState.makeMove(move);
+		
+		return new BoardState(boardState);
+	}
+	
+	/**
+	 * Reserves the session for an AI move and returns the position to search.
+	 * Throws an IllegalStateException while another AI move is searched or
+	 * after the game has ended.
+	 */
+	public synchronized BoardState startSearch() {
+		checkPlayable();
+		isSearching = true;
+		
+		return new BoardState(boardState);
+	}
+	
+	/**
+	 * Returns the maximum time of the next AI move: the time per move, but not
+	 * more than the remaining budget. An exhausted budget still allows the
+	 * first iteration, which always completes.
+	 */
+	public synchronized int getSearchTime() {
+		return (int) Math.max(1, Math.min(moveTime, remainingTime));
+	}
+	
+	/**
+	 * Called by the search thread before it searches with the given solver.
+	 * Returns false if the session has been closed in the meantime, so that
+	 * the search is skipped.
+	 */
+	public synchronized boolean beginSearch(AlphaBetaPruning solver) {
+		if (isClosed) {
+			isSearching = false;
+			return false;
+		}
+		
+		activeSolver = solver;
+		
+		return true;
+	}
+	
+	/**
+	 * Plays the best move of a finished search, charges its time to the
+	 * budget and releases the session. Returns the new position.
+	 */
+	public synchronized BoardState endSearch(SearchResult result, long searchNanos) {
+		activeSolver = null;
+		isSearching = false;
+		lastAccessNanoTime = System.nanoTime();
+		
+		if (remainingTime != UNLIMITED_BUDGET) {
+			remainingTime = Math.max(0, remainingTime - searchNanos / NANOS_PER_MILLISECOND);
+		}
+		
+		if (!isClosed && result != null && result.getBestMove() != null) {
+			boardState.makeMove(result.getBestMove());
+		}
+		
+		return new BoardState(boardState);
+	}
+	
+	/**
+	 * Releases the session after its search could not be started, e.g.
+	 * because the search queue was full.
+	 */
+	public synchronized void abortSearch() {
+		isSearching = false;
+	}
+	
+	/**
+	 * Closes the session and stops its running search, whose result is then
+	 * discarded.
+	 */
+	public synchronized void close() {
+		isClosed = true;
+		
+		// The solver is only released in endSearch, so this can not stop the search of another session.
+		if (activeSolver != null) {
+			activeSolver.terminateSearch();
+		}
+	}
+	
+	private void checkPlayable() {
+		lastAccessNanoTime = System.nanoTime();
+		
+		if (isClosed) {
+			throw new IllegalStateException("game " + id + " is closed");
+		} else if (isSearching) {
+			throw new IllegalStateException("game " + id + " is searching");
+		} else if (boardState.hasCurrentPlayerLost()) {
+			throw new IllegalStateException("game " + id + " is over");
+		}
+	}
+}
@@ -0,0 +1,338 @@
+package game.ninemensmorris.Tools;
+
+import java.io.File;
+import java.io.IOException;
+
+import game.ninemensmorris.Algorithms.EndgameDatabase;
+import game.ninemensmorris.Models.BoardState;
+
+/**
+ * Solves the moving phase by retrograde analysis and writes one endgame
+ * database file per subspace (see EndgameDatabase).
+ *
+ * A move that does not close a mill keeps the number of pieces, so the
+ * subspaces with a own and b other pieces and with b own and a other pieces
+ * are solved together. A move that closes a mill always takes a piece and
+ * leads into a subspace with one piece less, which has already been solved,
+ * so the subspaces are solved by increasing total number of pieces.
+ *
+ * Within a pair of subspaces, the values of all positions are found level by
+ * level of increasing distance: the predecessors of a lost position are won,
+ * and a position is lost once all its successors are known to be won. The
+ * results of mill moves are looked up in the already written files beforehand.
+ * Positions that are neither won nor lost in the end are draws.
+ *
+ * Usage:
+ *   EndgameGenerator [maxPieces] [directory]
+ * Generates all subspaces with up to maxPieces pieces per player (default 4)
+ * into directory (default "endgame"). Existing files are used instead of
+ * being generated again. Solving a pair of subspaces needs about five bytes of
+ * heap per position before symmetry reduction.
+ */
+public class EndgameGenerator {
+	private static final int DEFAULT_MAX_PIECES = 4;
+	private static final String DEFAULT_DIRECTORY = "endgame";
+	
+	// Capture information of a position that has a mill move leading to a draw.
+	private static final short CAN_NOT_LOSE = Short.MIN_VALUE;
+	
+	private final EndgameDatabase database;
+	private final File directory;
+	private final int[] masks;
+	
+	public EndgameGenerator(File directory) {
+		this.database = new EndgameDatabase();
+		this.directory = directory;
+		this.masks = new int[2];
+	}
+	
+	public EndgameDatabase getDatabase() {
+		return database;
+	}
+	
+	/**
+	 * Solved values and the bookkeeping of the retrograde analysis of one
+	 * subspace.
+	 */
+	private static final class Subspace {
+		private final int ownPieces;
+		private final int otherPieces;
+		private final short[] values;
+		// Win distance of the best mill move if positive, otherwise the negated
+		// loss distance of the best mill move, or CAN_NOT_LOSE.
+		private final short[] captureInformation;
+		// Number of moves without a mill whose result is not yet known to be a loss.
+		private final byte[] remainingMoves;
+		private Subspace mate;
+		
+		public Subspace(int ownPieces, int otherPieces) {
+			long numberOfPositions = EndgameDatabase.getNumberOfPositions(ownPieces, otherPieces);
+			
+			if (numberOfPositions > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Subspace " + ownPieces + "v" + otherPieces
+						+ " with " + numberOfPositions + " positions is too large");
+			}
+			
+			this.ownPieces = ownPieces;
+			this.otherPieces = otherPieces;
+			this.values = new short[(int) numberOfPositions];
+			this.captureInformation = new short[(int) numberOfPositions];
+			this.remainingMoves = new byte[(int) numberOfPositions];
+		}
+	}
+	
+	public void generate(int maxPieces) throws IOException {
+		if (maxPieces < EndgameDatabase.MIN_PIECES || maxPieces > EndgameDatabase.MAX_PIECES) {
+			throw new IllegalArgumentException("maxPieces must be between "
+					+ EndgameDatabase.MIN_PIECES + " and " + EndgameDatabase.MAX_PIECES);
+		}
+		
+		for (int totalPieces = 2 * EndgameDatabase.MIN_PIECES; totalPieces <= 2 * maxPieces; totalPieces++) {
+			for (int ownPieces = EndgameDatabase.MIN_PIECES; 2 * ownPieces <= totalPieces; ownPieces++) {
+				int otherPieces = totalPieces - ownPieces;
+				
+				if (otherPieces <= maxPieces) {
+					generatePair(ownPieces, otherPieces);
+				}
+			}
+		}
+	}
+	
+	private void generatePair(int ownPieces, int otherPieces) throws IOException {
+		File file = new File(directory, EndgameDatabase.getFileName(ownPieces, otherPieces));
+		File mateFile = new File(directory, EndgameDatabase.getFileName(otherPieces, ownPieces));
+		
+		if (file.isFile() && mateFile.isFile()) {
+			database.addSubspace(ownPieces, otherPieces, file);
+			database.addSubspace(otherPieces, ownPieces, mateFile);
+			System.out.println(ownPieces + "v" + otherPieces + ": loaded");
+			
+			return;
+		}
+		
+		long startTime = System.nanoTime();
+		Subspace subspace = new Subspace(ownPieces, otherPieces);
+		Subspace mate = subspace;
+		
+		if (otherPieces != ownPieces) {
+			mate = new Subspace(otherPieces, ownPieces);
+		}
+		
+		subspace.mate = mate;
+		mate.mate = subspace;
+		
+		int maxDistance = initialize(subspace);
+		
+		if (mate != subspace) {
+			maxDistance = Math.max(maxDistance, initialize(mate));
+		}
+		
+		for (int distance = 0; distance <= maxDistance; distance++) {
+			maxDistance = Math.max(maxDistance, solveLevel(subspace, distance));
+			
+			if (mate != subspace) {
+				maxDistance = Math.max(maxDistance, solveLevel(mate, distance));
+			}
+		}
+		
+		directory.mkdirs();
+		EndgameDatabase.writeSubspace(file, ownPieces, otherPieces, subspace.values);
+		database.addSubspace(ownPieces, otherPieces, file);
+		
+		if (mate != subspace) {
+			EndgameDatabase.writeSubspace(mateFile, otherPieces, ownPieces, mate.values);
+			database.addSubspace(otherPieces, ownPieces, mateFile);
+		}
+		
+		System.out.println(String.format("%dv%d: %s", ownPieces, otherPieces, describe(subspace)));
+		
+		if (mate != subspace) {
+			System.out.println(String.format("%dv%d: %s", otherPieces, ownPieces, describe(mate)));
+		}
+		
+		System.out.println(String.format("solved in %.1f s, longest distance %d",
+				(System.nanoTime() - startTime) / 1e9, maxDistance - 1));
+	}
+	
+	private static String describe(Subspace subspace) {
+		long wins = 0;
+		long losses = 0;
+		
+		for (short value : subspace.values) {
+			if (EndgameDatabase.isWin(value)) {
+				wins++;
+			} else if (EndgameDatabase.isLoss(value)) {
+				losses++;
+			}
+		}
+		
+		return String.format("%d positions, %d wins, %d losses, %d draws",
+				subspace.values.length, wins, losses, subspace.values.length - wins - losses);
+	}
+	
+	private static boolean isFlying(int pieces) {
+		return pieces <= 3 && BoardState.IS_FLYING_ALLOWED;
+	}
+	
+	/**
+	 * Counts the moves without a mill of every position and evaluates its mill
+	 * moves. Returns the largest distance of a result known so far.
+	 */
+	private int initialize(Subspace subspace) {
+		int maxDistance = 0;
+		boolean isFlying = isFlying(subspace.ownPieces);
+		
+		for (int index = 0; index < subspace.values.length; index++) {
+			EndgameDatabase.getMasks(subspace.ownPieces, subspace.otherPieces, index, masks);
+			
+			int ownMask = masks[0];
+			int otherMask = masks[1];
+			int emptyMask = ~(ownMask | otherMask) & BoardState.ALL_POSITIONS_MASK;
+			int takeableMask = otherMask & ~BoardState.getMillPiecesMaskOf(otherMask);
+			
+			if (takeableMask == 0) {
+				takeableMask = otherMask;
+			}
+			
+			int remainingMoves = 0;
+			int bestWinDistance = Integer.MAX_VALUE;
+			int worstLossDistance = 0;
+			boolean canNotLose = false;
+			
+			for (int pieces = ownMask; pieces != 0; pieces &= pieces - 1) {
+				int from = Integer.numberOfTrailingZeros(pieces);
+				int targets = isFlying ? emptyMask : BoardState.getNeighboursMask(from) & emptyMask;
+				
+				for (; targets != 0; targets &= targets - 1) {
+					int to = Integer.numberOfTrailingZeros(targets);
+					int newOwnMask = ownMask & ~(1 << from) | (1 << to);
+					
+					if (!BoardState.isPositionInMill(newOwnMask, to)) {
+						remainingMoves++;
+						continue;
+					}
+					
+					if (subspace.otherPieces - 1 < EndgameDatabase.MIN_PIECES) {
+						bestWinDistance = 1;
+						continue;
+					}
+					
+					for (int taken = takeableMask; taken != 0; taken &= taken - 1) {
+						int value = database.probe(otherMask & ~Integer.lowestOneBit(taken), newOwnMask);
+						
+						if (value == EndgameDatabase.UNKNOWN) {
+							throw new IllegalStateException("Subspace " + (subspace.otherPieces - 1)
+									+ "v" + subspace.ownPieces + " has not been solved");
+						} else if (EndgameDatabase.isLoss(value)) {
+							bestWinDistance = Math.min(bestWinDistance, EndgameDatabase.getDistance(value) + 1);
+						} else if (EndgameDatabase.isWin(value)) {
+							worstLossDistance = Math.max(worstLossDistance, EndgameDatabase.getDistance(value) + 1);
+						} else {
+							canNotLose = true;
+						}
+					}
+				}
+			}
+			
+			subspace.remainingMoves[index] = (byte) remainingMoves;
+			
+			if (bestWinDistance != Integer.MAX_VALUE) {
+				subspace.captureInformation[index] = (short) bestWinDistance;
+				maxDistance = Math.max(maxDistance, bestWinDistance);
+				
+				if (remainingMoves == 0) {
+					subspace.values[index] = (short) EndgameDatabase.createValue(true, bestWinDistance);
+				}
+			} else if (canNotLose) {
+				subspace.captureInformation[index] = CAN_NOT_LOSE;
+			} else {
+				subspace.captureInformation[index] = (short) -worstLossDistance;
+				
+				if (remainingMoves == 0) {
+					subspace.values[index] = (short) EndgameDatabase.createValue(false, worstLossDistance);
+					maxDistance = Math.max(maxDistance, worstLossDistance);
+				}
+			}
+		}
+		
+		return maxDistance;
+	}
+	
+	/**
+	 * Finalizes the wins by mill moves at the given distance and propagates all
+	 * results at that distance to the predecessors in the mate subspace.
+	 * Returns the largest distance of a newly found result.
+	 */
+	private int solveLevel(Subspace subspace, int distance) {
+		int maxDistance = 0;
+		Subspace mate = subspace.mate;
+		boolean isFlying = isFlying(subspace.otherPieces);
+		
+		for (int index = 0; index < subspace.values.length; index++) {
+			int value = subspace.values[index];
+			
+			if (value == EndgameDatabase.DRAW) {
+				if (subspace.captureInformation[index] != distance || distance == 0) {
+					continue;
+				}
+				
+				value = EndgameDatabase.createValue(true, distance);
+				subspace.values[index] = (short) value;
+			} else if (EndgameDatabase.getDistance(value) != distance) {
+				continue;
+			}
+			
+			boolean isLoss = EndgameDatabase.isLoss(value);
+			
+			EndgameDatabase.getMasks(subspace.ownPieces, subspace.otherPieces, index, masks);
+			
+			int ownMask = masks[0];
+			int otherMask = masks[1];
+			int emptyMask = ~(ownMask | otherMask) & BoardState.ALL_POSITIONS_MASK;
+			
+			// The other player has just moved a piece to a position where it
+			// does not close a mill.
+			for (int pieces = otherMask; pieces != 0; pieces &= pieces - 1) {
+				int to = Integer.numberOfTrailingZeros(pieces);
+				
+				if (BoardState.isPositionInMill(otherMask, to)) {
+					continue;
+				}
+				
+				int sources = isFlying ? emptyMask : BoardState.getNeighboursMask(to) & emptyMask;
+				
+				for (; sources != 0; sources &= sources - 1) {
+					int previousOtherMask = otherMask & ~(1 << to) | Integer.lowestOneBit(sources);
+					int previousIndex = (int) EndgameDatabase.getIndex(previousOtherMask, ownMask);
+					
+					if (mate.values[previousIndex] != EndgameDatabase.DRAW) {
+						continue;
+					}
+					
+					if (isLoss) {
+						mate.values[previousIndex] = (short) EndgameDatabase.createValue(true, distance + 1);
+						maxDistance = Math.max(maxDistance, distance + 1);
+					} else if (--mate.remainingMoves[previousIndex] == 0) {
+						int captureInformation = mate.captureInformation[previousIndex];
+						
+						if (captureInformation <= 0 && captureInformation != CAN_NOT_LOSE) {
+							int lossDistance = Math.max(distance + 1, -captureInformation);
+							
+							mate.values[previousIndex] = (short) EndgameDatabase.createValue(false, lossDistance);
+							maxDistance = Math.max(maxDistance, lossDistance);
+						}
+					}
+				}
+			}
+		}
+		
+		return maxDistance;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		int maxPieces = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_PIECES;
+		File directory = new File(args.length > 1 ? args[1] : DEFAULT_DIRECTORY);
+		
+		new EndgameGenerator(directory).generate(maxPieces);
+	}
+}
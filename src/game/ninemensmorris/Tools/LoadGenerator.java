@@ -0,0 +1,281 @@
+package game.ninemensmorris.Tools;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import game.ninemensmorris.Algorithms.SearchExecutor;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Load test client for game.ninemensmorris.Server.GameServer. Opens the
+ * given number of games and plays them from a fixed number of client
+ * threads, each of which takes turns between its games: a random move for
+ * one side, then an AI move for the other. Finished games are closed and
+ * replaced by new ones, so the number of open games stays constant. Reports
+ * the number of requests, refused requests and the latency percentiles of
+ * every kind of request, and the statistics of the server.
+ *
+ * Usage: LoadGenerator [url] [sessions] [clients] [rounds] [moveTime] [seed]
+ * where sessions is the number of open games (default 1000), clients the
+ * number of concurrent requests (default 32), rounds the number of moves
+ * played in every game slot (default 10) and moveTime the time per AI move
+ * in milliseconds (default 20).
+ */
+public class LoadGenerator {
+	private static final String DEFAULT_URL = "http://localhost:8080";
+	private static final int DEFAULT_NUMBER_OF_SESSIONS = 1000;
+	private static final int DEFAULT_NUMBER_OF_CLIENTS = 32;
+	private static final int DEFAULT_NUMBER_OF_ROUNDS = 10;
+	private static final int DEFAULT_MOVE_TIME = 20;
+	private static final int STATUS_SERVICE_UNAVAILABLE = 503;
+	private static final String[] REQUEST_TYPES = {"create", "move", "go", "close"};
+	
+	/**
+	 * Latencies of the requests of one kind, in nanoseconds.
+	 */
+	private static final class Latencies {
+		private long[] values = new long[1024];
+		private int size = 0;
+		private int refused = 0;
+		private int failed = 0;
+		
+		public void add(long nanos) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			
+			values[size++] = nanos;
+		}
+		
+		public void addAll(Latencies other) {
+			for (int i = 0; i < other.size; i++) {
+				add(other.values[i]);
+			}
+			
+			refused += other.refused;
+			failed += other.failed;
+		}
+		
+		/**
+		 * Returns the latency that the given fraction of the requests did not
+		 * exceed (nearest rank), after {@link #sort()}.
+		 */
+		public double getPercentileMillis(double fraction) {
+			if (size == 0) {
+				return 0;
+			}
+			
+			return values[Math.max(0, (int) Math.ceil(fraction * size) - 1)] / 1e6;
+		}
+		
+		public void sort() {
+			Arrays.sort(values, 0, size);
+		}
+	}
+	
+	private static final class Game {
+		private final String id;
+		private BoardState boardState;
+		
+		public Game(String id, BoardState boardState) {
+			this.id = id;
+			this.boardState = boardState;
+		}
+	}
+	
+	private final HttpClient httpClient;
+	private final String url;
+	private final int moveTime;
+	
+	public LoadGenerator(String url, int moveTime) {
+		this.httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		this.url = url;
+		this.moveTime = moveTime;
+	}
+	
+	/**
+	 * Sends a request and records its latency. Returns the body of the answer
+	 * or null if the server refused or failed the request.
+	 */
+	private String send(String method, String path, Latencies latencies) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url + path))
+				.method(method, HttpRequest.BodyPublishers.noBody()).build();
+		long startTime = System.nanoTime();
+		HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+		
+		latencies.add(System.nanoTime() - startTime);
+		
+		if (response.statusCode() == STATUS_SERVICE_UNAVAILABLE) {
+			latencies.refused++;
+			return null;
+		} else if (response.statusCode() / 100 != 2) {
+			latencies.failed++;
+			return null;
+		}
+		
+		return response.body();
+	}
+	
+	private static String getField(String body, String name) {
+		for (String line : body.split("\n")) {
+			if (line.startsWith(name + " ")) {
+				return line.substring(name.length() + 1);
+			}
+		}
+		
+		throw new IllegalStateException("missing " + name + " in answer: " + body);
+	}
+	
+	private Game createGame(Latencies latencies) throws IOException, InterruptedException {
+		String body = send("POST", "/games?movetime=" + moveTime, latencies);
+		
+		return body == null ? null : new Game(getField(body, "game"), BoardState.parse(getField(body, "board")));
+	}
+	
+	/**
+	 * Opens the given number of games and plays the given number of rounds
+	 * in every game slot, filling the latencies of every kind of request.
+	 */
+	private void play(int numberOfGames, int rounds, Random random, Latencies[] latencies)
+			throws IOException, InterruptedException {
+		List<Game> games = new ArrayList<Game>();
+		
+		while (games.size() < numberOfGames) {
+			Game game = createGame(latencies[0]);
+			
+			if (game == null) {
+				throw new IllegalStateException("the server refused to open a game");
+			}
+			
+			games.add(game);
+		}
+		
+		for (int round = 0; round < rounds; round++) {
+			for (int i = 0; i < games.size(); i++) {
+				Game game = games.get(i);
+				
+				if (!game.boardState.hasCurrentPlayerLost()) {
+					List<Move> moves = game.boardState.getValidMoves(null);
+					String body = send("POST", "/games/" + game.id + "/move?move="
+							+ moves.get(random.nextInt(moves.size())), latencies[1]);
+					
+					if (body != null) {
+						game.boardState = BoardState.parse(getField(body, "board"));
+					}
+				}
+				
+				// A refused AI move is tried again in the next round.
+				if (!game.boardState.hasCurrentPlayerLost()) {
+					String body = send("POST", "/games/" + game.id + "/go", latencies[2]);
+					
+					if (body != null) {
+						game.boardState = BoardState.parse(getField(body, "board"));
+					}
+				}
+				
+				if (game.boardState.hasCurrentPlayerLost()) {
+					send("DELETE", "/games/" + game.id, latencies[3]);
+					
+					Game newGame = createGame(latencies[0]);
+					if (newGame != null) {
+						games.set(i, newGame);
+					}
+				}
+			}
+		}
+		
+		for (Game game : games) {
+			send("DELETE", "/games/" + game.id, latencies[3]);
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		final String url = args.length > 0 ? args[0] : DEFAULT_URL;
+		int numberOfSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_SESSIONS;
+		int numberOfClients = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_NUMBER_OF_CLIENTS;
+		final int rounds = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_NUMBER_OF_ROUNDS;
+		int moveTime = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_MOVE_TIME;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+		
+		if (numberOfSessions < 1 || numberOfClients < 1 || numberOfClients > numberOfSessions) {
+			throw new IllegalArgumentException("invalid load: " + numberOfSessions + " sessions, " + numberOfClients + " clients");
+		}
+		
+		final LoadGenerator generator = new LoadGenerator(url, moveTime);
+		ExecutorService clients = Executors.newFixedThreadPool(numberOfClients, SearchExecutor.newDaemonThreadFactory("client"));
+		List<Future<Latencies[]>> results = new ArrayList<Future<Latencies[]>>();
+		long startTime = System.nanoTime();
+		
+		for (int i = 0; i < numberOfClients; i++) {
+			final int numberOfGames = numberOfSessions / numberOfClients + (i < numberOfSessions % numberOfClients ? 1 : 0);
+			final Random random = new Random(seed + i);
+			
+			results.add(clients.submit(new Callable<Latencies[]>() {
+				@Override
+				public Latencies[] call() throws Exception {
+					Latencies[] latencies = new Latencies[REQUEST_TYPES.length];
+					
+					for (int type = 0; type < latencies.length; type++) {
+						latencies[type] = new Latencies();
+					}
+					
+					generator.play(numberOfGames, rounds, random, latencies);
+					
+					return latencies;
+				}
+			}));
+		}
+		
+		Latencies[] total = new Latencies[REQUEST_TYPES.length];
+		
+		for (int type = 0; type < total.length; type++) {
+			total[type] = new Latencies();
+		}
+		
+		for (Future<Latencies[]> result : results) {
+			try {
+				Latencies[] latencies = result.get();
+				
+				for (int type = 0; type < total.length; type++) {
+					total[type].addAll(latencies[type]);
+				}
+			} catch (ExecutionException e) {
+				System.out.println("client failed: " + e.getCause());
+			}
+		}
+		
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		int numberOfRequests = 0;
+		
+		clients.shutdown();
+		System.out.printf("%d sessions, %d clients, %d rounds, movetime %d ms%n", numberOfSessions, numberOfClients,
+				rounds, moveTime);
+		
+		for (int type = 0; type < total.length; type++) {
+			Latencies latencies = total[type];
+			
+			latencies.sort();
+			numberOfRequests += latencies.size;
+			System.out.printf("%-6s %8d requests %6d refused %6d failed   p50 %8.2f ms  p90 %8.2f ms  p99 %8.2f ms  max %8.2f ms%n",
+					REQUEST_TYPES[type], latencies.size, latencies.refused, latencies.failed,
+					latencies.getPercentileMillis(0.5), latencies.getPercentileMillis(0.9),
+					latencies.getPercentileMillis(0.99), latencies.getPercentileMillis(1));
+		}
+		
+		System.out.printf("%d requests in %.1f s, %.0f requests/s%n", numberOfRequests, seconds, numberOfRequests / seconds);
+		System.out.print(generator.send("GET", "/stats", new Latencies()));
+	}
+}
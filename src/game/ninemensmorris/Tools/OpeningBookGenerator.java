@@ -0,0 +1,127 @@
+package game.ninemensmorris.Tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Algorithms.OpeningBook;
+import game.ninemensmorris.Algorithms.SearchProgressCallback;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Builds an opening book by searching every position of the first plies of
+ * the placing phase to a fixed depth. Positions that are equal up to a board
+ * symmetry are searched only once.
+ *
+ * Usage:
+ *   OpeningBookGenerator [plies] [depth] [file] [threads]
+ * Searches all positions after less than plies moves (default 4) to the
+ * given depth (default 10) and writes the book to file (default
+ * "opening.book"). Entries of an existing book are kept and positions that
+ * are already in it are not searched again.
+ */
+public class OpeningBookGenerator {
+	private static final int DEFAULT_PLIES = 4;
+	private static final int DEFAULT_DEPTH = 10;
+	private static final String DEFAULT_FILE = "opening.book";
+	private static final int TRANSPOSITION_TABLE_SIZE = 256;
+	
+	/**
+	 * Returns one position per symmetry class of all positions that can be
+	 * reached from the start position in less than the given number of plies.
+	 */
+	public static List<BoardState> getPositions(int plies) {
+		List<BoardState> result = new ArrayList<BoardState>();
+		Set<Long> visitedBoardIDs = new HashSet<Long>();
+		List<BoardState> currentPly = new ArrayList<BoardState>();
+		int[] moves = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		int[] scores = new int[BoardState.MAX_NUMBER_OF_MOVES];
+		
+		BoardState start = new BoardState();
+		visitedBoardIDs.add(start.getCanonicalBoardID());
+		currentPly.add(start);
+		
+		for (int ply = 0; ply < plies; ply++) {
+			List<BoardState> nextPly = new ArrayList<BoardState>();
+			
+			for (BoardState boardState : currentPly) {
+				if (boardState.hasCurrentPlayerLost()) {
+					continue;
+				}
+				
+				result.add(boardState);
+				
+				int numberOfMoves = boardState.generateMoves(moves, scores, null);
+				
+				for (int i = 0; i < numberOfMoves; i++) {
+					BoardState nextBoardState = new BoardState(boardState);
+					nextBoardState.makeMove(moves[i]);
+					
+					if (visitedBoardIDs.add(nextBoardState.getCanonicalBoardID())) {
+						nextPly.add(nextBoardState);
+					}
+				}
+			}
+			
+			currentPly = nextPly;
+		}
+		
+		return result;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		int plies = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PLIES;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+		File file = new File(args.length > 2 ? args[2] : DEFAULT_FILE);
+		int numberOfThreads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		
+		OpeningBook book = file.isFile() ? OpeningBook.load(file) : new OpeningBook();
+		List<BoardState> positions = getPositions(plies);
+		
+		AlphaBetaPruning solver = new AlphaBetaPruning(new BoardState(), depth, Integer.MAX_VALUE);
+		solver.setTranspositionTableSize(TRANSPOSITION_TABLE_SIZE);
+		solver.setNumberOfThreads(numberOfThreads);
+		solver.setUseCanonicalKeys(true);
+		
+		final int[] lastValue = new int[1];
+		solver.setSearchProgressCallback(new SearchProgressCallback() {
+			@Override
+			public void onDepthCompleted(int depth, int value, long nodes, long timeInNanos, List<Move> principalVariation) {
+				lastValue[0] = value;
+			}
+		});
+		
+		System.out.println(positions.size() + " positions to depth " + depth);
+		
+		long startTime = System.nanoTime();
+		int searched = 0;
+		
+		for (BoardState boardState : positions) {
+			if (book.contains(boardState)) {
+				continue;
+			}
+			
+			solver.setBoardState(boardState);
+			
+			Move move = solver.searchForBestMove();
+			
+			book.put(boardState, move.toPackedMove(), lastValue[0], depth);
+			searched++;
+			
+			if (searched % 100 == 0) {
+				book.save(file);
+				System.out.println(String.format("%d/%d positions, %.1f s", searched, positions.size(),
+						(System.nanoTime() - startTime) / 1e9));
+			}
+		}
+		
+		book.save(file);
+		System.out.println(String.format("%d positions searched in %.1f s, %d in book", searched,
+				(System.nanoTime() - startTime) / 1e9, book.getSize()));
+	}
+}
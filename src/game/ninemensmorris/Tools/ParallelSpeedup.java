@@ -0,0 +1,82 @@
+package game.ninemensmorris.Tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Algorithms.AlphaBetaPruning.ParallelMode;
+import game.ninemensmorris.Algorithms.SearchStatistics;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Measures time to depth of the parallel search modes for an increasing
+ * number of threads, and checks that the deterministic young brothers wait
+ * mode returns the same move for every thread count.
+ * 
+ * Usage: ParallelSpeedup [depth] [maxThreads] [LAZY_SMP|YOUNG_BROTHERS_WAIT]
+ */
+public class ParallelSpeedup {
+	private static final int NUMBER_OF_POSITIONS = 4;
+	private static final int PLIES_BETWEEN_POSITIONS = 5;
+	
+	private static List<BoardState> createPositions() {
+		List<BoardState> result = new ArrayList<BoardState>();
+		BoardState boardState = new BoardState();
+		
+		for (int i = 0; i < NUMBER_OF_POSITIONS; i++) {
+			result.add(new BoardState(boardState));
+			
+			for (int ply = 0; ply < PLIES_BETWEEN_POSITIONS; ply++) {
+				List<Move> moves = boardState.getValidMoves(null);
+				boardState.makeMove(moves.get((i * PLIES_BETWEEN_POSITIONS + ply) * 7 % moves.size()));
+			}
+		}
+		
+		return result;
+	}
+	
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		ParallelMode mode = args.length > 2 ? ParallelMode.valueOf(args[2]) : ParallelMode.YOUNG_BROTHERS_WAIT;
+		
+		List<BoardState> positions = createPositions();
+		long[] baselineTimes = new long[positions.size()];
+		Move[] baselineMoves = new Move[positions.size()];
+		
+		System.out.println("mode " + mode + ", depth " + depth);
+		
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			long totalTime = 0;
+			long totalBaselineTime = 0;
+			long totalNodes = 0;
+			boolean isReproducible = true;
+			
+			for (int i = 0; i < positions.size(); i++) {
+				AlphaBetaPruning solver = new AlphaBetaPruning(positions.get(i), depth, Integer.MAX_VALUE);
+				solver.setNumberOfThreads(threads);
+				solver.setParallelMode(mode);
+				
+				Move move = solver.searchForBestMove();
+				SearchStatistics statistics = solver.getLastSearchStatistics();
+				long time = statistics.getTimeToDepth(statistics.getNumberOfCompletedDepths() - 1);
+				
+				if (threads == 1) {
+					baselineTimes[i] = time;
+					baselineMoves[i] = move;
+				} else if (move == null ? baselineMoves[i] != null : !move.equals(baselineMoves[i])) {
+					isReproducible = false;
+				}
+				
+				totalTime += time;
+				totalBaselineTime += baselineTimes[i];
+				totalNodes += solver.getSearchedNodes();
+			}
+			
+			System.out.println(String.format("threads %3d: time to depth %10.2f ms, %12d nodes, speedup %5.2f%s",
+					threads, totalTime / 1e6, totalNodes, (double) totalBaselineTime / totalTime,
+					isReproducible ? "" : ", best move differs from 1 thread"));
+		}
+	}
+}
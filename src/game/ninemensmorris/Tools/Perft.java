@@ -0,0 +1,187 @@
+package game.ninemensmorris.Tools;
+
+import java.util.List;
+
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Counts the leaf nodes of the game tree to a fixed depth, to measure and
+ * verify move generation, makeMove and undoMove independently of the search.
+ * Positions where the player to move has less than three pieces are not
+ * expanded.
+ *
+ * Usage:
+ *   Perft                                  run the reference suite
+ *   Perft [options] depth                  count from the start position
+ * Options:
+ *   --position "notation"   start from the given position (see BoardState.parse)
+ *   --divide                print the count of every root move
+ *   --legacy                use getValidMoves and Move objects instead of packed moves
+ *   --verify                compare packed and legacy move generation
+ */
+public class Perft {
+	// Reference counts computed with the original array based BoardState.
+	private static final Object[][] REFERENCE_POSITIONS = {
+		{"........................ W 9 9", 5, 5140800L},
+		{"....WB..WB.W..B.B.....W. W 5 5", 4, 60840L},
+		{"WB.WB.WB.W.BB..B....WW.. W 2 2", 5, 105382L},
+		{"BBW.B.WB.B.W..WWWB...B.W W 0 0", 7, 1414199L},
+		{"W.B....B.BBB..W..W...WWW W 0 0", 7, 2535635L},
+		{"WWB.BBBW..W.BWW...B.BB.B W 0 0", 7, 943160L},
+	};
+
+	private final int[][] movesPerDepth;
+	private final int[][] scoresPerDepth;
+
+	public Perft(int maxDepth) {
+		movesPerDepth = new int[maxDepth + 1][BoardState.MAX_NUMBER_OF_MOVES];
+		scoresPerDepth = new int[maxDepth + 1][BoardState.MAX_NUMBER_OF_MOVES];
+	}
+
+	public long perft(BoardState boardState, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+
+		if (boardState.getRemainingPiecesOfCurrentPlayer() < 3) {
+			return 0;
+		}
+
+		int[] moves = movesPerDepth[depth];
+		int numberOfMoves = boardState.generateMoves(moves, scoresPerDepth[depth], null);
+
+		if (depth == 1) {
+			return numberOfMoves;
+		}
+
+		long result = 0;
+
+		for (int i = 0; i < numberOfMoves; i++) {
+			boardState.makeMove(moves[i]);
+			result += perft(boardState, depth - 1);
+			boardState.undoMove(moves[i]);
+		}
+
+		return result;
+	}
+
+	public static long perftLegacy(BoardState boardState, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+
+		if (boardState.getRemainingPiecesOfCurrentPlayer() < 3) {
+			return 0;
+		}
+
+		List<Move> moves = boardState.getValidMoves(null);
+		long result = 0;
+
+		for (Move move : moves) {
+			boardState.makeMove(move);
+			result += perftLegacy(boardState, depth - 1);
+			boardState.undoMove(move);
+		}
+
+		return result;
+	}
+
+	private long count(BoardState boardState, int depth, boolean isLegacy) {
+		return isLegacy ? perftLegacy(boardState, depth) : perft(boardState, depth);
+	}
+
+	private long divide(BoardState boardState, int depth, boolean isLegacy) {
+		long result = 0;
+
+		for (Move move : boardState.getValidMoves(null)) {
+			boardState.makeMove(move);
+			long nodes = count(boardState, depth - 1, isLegacy);
+			boardState.undoMove(move);
+
+			System.out.println(move + ": " + nodes);
+			result += nodes;
+		}
+
+		return result;
+	}
+
+	private static String formatResult(int depth, long nodes, long timeInNanos) {
+		return String.format("depth %d: %12d nodes in %9.2f ms (%.0f nodes/s)",
+				depth, nodes, timeInNanos / 1e6, nodes * 1e9 / Math.max(timeInNanos, 1));
+	}
+
+	private static boolean runReferenceSuite() {
+		boolean isSuccessful = true;
+		long totalNodes = 0;
+		long totalTime = 0;
+
+		for (Object[] reference : REFERENCE_POSITIONS) {
+			BoardState boardState = BoardState.parse((String) reference[0]);
+			int depth = (Integer) reference[1];
+			long expectedNodes = (Long) reference[2];
+
+			long startTime = System.nanoTime();
+			long nodes = new Perft(depth).perft(boardState, depth);
+			long time = System.nanoTime() - startTime;
+
+			totalNodes += nodes;
+			totalTime += time;
+
+			boolean isCorrect = nodes == expectedNodes && boardState.toString().equals(reference[0]);
+			isSuccessful &= isCorrect;
+
+			System.out.println(reference[0] + "  " + formatResult(depth, nodes, time)
+					+ (isCorrect ? "  OK" : "  FAILED, expected " + expectedNodes));
+		}
+
+		System.out.println(String.format("total: %d nodes in %.2f ms (%.0f nodes/s)",
+				totalNodes, totalTime / 1e6, totalNodes * 1e9 / Math.max(totalTime, 1)));
+
+		return isSuccessful;
+	}
+
+	public static void main(String[] args) {
+		BoardState boardState = new BoardState();
+		int depth = -1;
+		boolean isDivide = false;
+		boolean isLegacy = false;
+		boolean isVerify = false;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--position") && i + 1 < args.length) {
+				boardState = BoardState.parse(args[++i]);
+			} else if (args[i].equals("--divide")) {
+				isDivide = true;
+			} else if (args[i].equals("--legacy")) {
+				isLegacy = true;
+			} else if (args[i].equals("--verify")) {
+				isVerify = true;
+			} else {
+				depth = Integer.parseInt(args[i]);
+			}
+		}
+
+		if (depth == -1) {
+			System.exit(runReferenceSuite() ? 0 : 1);
+		}
+
+		Perft perft = new Perft(depth);
+		long startTime = System.nanoTime();
+		long nodes = isDivide ? perft.divide(boardState, depth, isLegacy) : perft.count(boardState, depth, isLegacy);
+		long time = System.nanoTime() - startTime;
+
+		System.out.println(formatResult(depth, nodes, time));
+
+		if (isVerify) {
+			long otherNodes = perft.count(boardState, depth, !isLegacy);
+
+			if (otherNodes != nodes) {
+				System.out.println("MISMATCH: " + (isLegacy ? "packed" : "legacy") + " move generation counts " + otherNodes);
+				System.exit(1);
+			}
+
+			System.out.println("packed and legacy move generation agree");
+		}
+	}
+}
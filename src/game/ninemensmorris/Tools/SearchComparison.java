@@ -0,0 +1,118 @@
+package game.ninemensmorris.Tools;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Algorithms.ReductionTable;
+import game.ninemensmorris.Algorithms.SearchProgressCallback;
+import game.ninemensmorris.Algorithms.SearchStatistics;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Measures nodes and time to depth of the search options against the plain
+ * full window search, single threaded and from an empty transposition table,
+ * and reports positions where an option changes the value of the search.
+ * 
+ * Late move reductions are measured on top of the move ordering heuristics,
+ * which decide which moves come late. The quiescence search searches more
+ * nodes and is expected to change values, since it evaluates other leaves.
+ * 
+ * Usage: SearchComparison [depth] [aspirationWindow] [reductionTable]
+ */
+public class SearchComparison {
+	private static final String[] POSITIONS = {
+		"........................ W 9 9",
+		"....WB..WB.W..B.B.....W. W 5 5",
+		"WB.WB.WB.W.BB..B....WW.. W 2 2",
+		"BBW.B.WB.B.W..WWWB...B.W W 0 0",
+		"W.B....B.BBB..W..W...WWW W 0 0",
+		"WWB.BBBW..W.BWW...B.BB.B W 0 0",
+	};
+	private static final int DEFAULT_DEPTH = 8;
+	private static final int DEFAULT_ASPIRATION_WINDOW = 4;
+	
+	private enum Configuration {
+		PLAIN(false, false, false, false, false),
+		PVS(true, false, false, false, false),
+		ASPIRATION(false, true, false, false, false),
+		MOVE_ORDERING(false, false, true, false, false),
+		LATE_MOVE_REDUCTIONS(false, false, true, true, false),
+		QUIESCENCE(false, false, false, false, true),
+		ALL(true, true, true, true, true);
+		
+		private final boolean usePrincipalVariationSearch;
+		private final boolean useAspirationWindow;
+		private final boolean useMoveOrderingHeuristics;
+		private final boolean useLateMoveReductions;
+		private final boolean useQuiescenceSearch;
+		
+		private Configuration(boolean usePrincipalVariationSearch, boolean useAspirationWindow,
+				boolean useMoveOrderingHeuristics, boolean useLateMoveReductions, boolean useQuiescenceSearch) {
+			this.usePrincipalVariationSearch = usePrincipalVariationSearch;
+			this.useAspirationWindow = useAspirationWindow;
+			this.useMoveOrderingHeuristics = useMoveOrderingHeuristics;
+			this.useLateMoveReductions = useLateMoveReductions;
+			this.useQuiescenceSearch = useQuiescenceSearch;
+		}
+		
+		void apply(AlphaBetaPruning solver, int aspirationWindow, ReductionTable reductionTable) {
+			solver.setUsePrincipalVariationSearch(usePrincipalVariationSearch);
+			solver.setAspirationWindow(useAspirationWindow ? aspirationWindow : 0);
+			solver.setUseMoveOrderingHeuristics(useMoveOrderingHeuristics);
+			solver.setUseLateMoveReductions(useLateMoveReductions);
+			solver.setReductionTable(reductionTable);
+			solver.setQuiescenceDepth(useQuiescenceSearch ? AlphaBetaPruning.DEFAULT_QUIESCENCE_DEPTH : 0);
+		}
+	}
+	
+	public static void main(String[] args) {
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+		int aspirationWindow = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ASPIRATION_WINDOW;
+		ReductionTable reductionTable = args.length > 2 ? ReductionTable.parse(args[2]) : ReductionTable.DEFAULT;
+		
+		long[] baselineNodes = new long[POSITIONS.length];
+		int[] baselineValues = new int[POSITIONS.length];
+		
+		System.out.println("depth " + depth + ", aspiration window " + aspirationWindow + ", reduction table " + reductionTable);
+		
+		for (Configuration configuration : Configuration.values()) {
+			long totalNodes = 0;
+			long totalBaselineNodes = 0;
+			long totalTime = 0;
+			List<Integer> changedValues = new ArrayList<Integer>();
+			
+			for (int i = 0; i < POSITIONS.length; i++) {
+				AlphaBetaPruning solver = new AlphaBetaPruning(BoardState.parse(POSITIONS[i]), depth, Integer.MAX_VALUE);
+				configuration.apply(solver, aspirationWindow, reductionTable);
+				
+				final int[] lastValue = new int[1];
+				solver.setSearchProgressCallback(new SearchProgressCallback() {
+					@Override
+					public void onDepthCompleted(int depth, int value, long nodes, long timeInNanos, List<Move> principalVariation) {
+						lastValue[0] = value;
+					}
+				});
+				
+				solver.searchForBestMove();
+				SearchStatistics statistics = solver.getLastSearchStatistics();
+				
+				if (configuration == Configuration.PLAIN) {
+					baselineNodes[i] = solver.getSearchedNodes();
+					baselineValues[i] = lastValue[0];
+				} else if (lastValue[0] != baselineValues[i]) {
+					changedValues.add(i);
+				}
+				
+				totalNodes += solver.getSearchedNodes();
+				totalBaselineNodes += baselineNodes[i];
+				totalTime += statistics.getTimeToDepth(statistics.getNumberOfCompletedDepths() - 1);
+			}
+			
+			System.out.println(String.format("%-20s %12d nodes (%6.1f%%), time to depth %10.2f ms%s",
+					configuration, totalNodes, 100.0 * totalNodes / totalBaselineNodes, totalTime / 1e6,
+					changedValues.isEmpty() ? "" : ", values differ in positions " + changedValues));
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package game.ninemensmorris.Tools;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import game.ninemensmorris.Algorithms.AlphaBetaPruning;
+import game.ninemensmorris.Models.BoardState;
+import game.ninemensmorris.Models.Move;
+
+/**
+ * Plays games between a solver with a search option switched on and one
+ * with it switched off, both otherwise with the default settings and the
+ * same time per move, to check that an option that searches deeper does not
+ * play worse. Every opening of random placements is played twice with
+ * swapped colors. A game is drawn when a position repeats three times or
+ * after a maximum number of plies.
+ * 
+ * Usage: SelfPlay [option] [games] [moveTime] [seed]
+ * where option is PVS, MoveOrdering, LateMoveReductions (default) or
+ * Quiescence, games the number of games (default 20) and moveTime the time
+ * per move in milliseconds (default 100).
+ */
+public class SelfPlay {
+	private static final String DEFAULT_OPTION = "LateMoveReductions";
+	private static final int DEFAULT_NUMBER_OF_GAMES = 20;
+	private static final int DEFAULT_MOVE_TIME = 100;
+	private static final int OPENING_PLIES = 2;
+	private static final int MAX_PLIES = 200;
+	private static final int MAX_DEPTH = 64;
+	private static final int TRANSPOSITION_TABLE_SIZE = 16;
+	
+	private static void setOption(AlphaBetaPruning solver, String option, boolean enabled) {
+		switch (option) {
+			case "PVS":
+				solver.setUsePrincipalVariationSearch(enabled);
+				break;
+			case "MoveOrdering":
+				solver.setUseMoveOrderingHeuristics(enabled);
+				break;
+			case "LateMoveReductions":
+				solver.setUseLateMoveReductions(enabled);
+				break;
+			case "Quiescence":
+				solver.setQuiescenceDepth(enabled ? AlphaBetaPruning.DEFAULT_QUIESCENCE_DEPTH : 0);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown option: " + option);
+		}
+	}
+	
+	private static BoardState createOpening(Random random) {
+		BoardState result = new BoardState();
+		
+		for (int ply = 0; ply < OPENING_PLIES; ply++) {
+			List<Move> moves = result.getValidMoves(null);
+			result.makeMove(moves.get(random.nextInt(moves.size())));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Plays a game from the given opening and returns the index of the
+	 * winning solver, or -1 for a draw.
+	 */
+	private static int playGame(BoardState opening, AlphaBetaPruning[] solvers) {
+		BoardState boardState = new BoardState(opening);
+		List<Long> boardIDs = new ArrayList<Long>();
+		
+		for (AlphaBetaPruning solver : solvers) {
+			solver.clearTranspositionTable();
+		}
+		
+		for (int ply = 0; ply < MAX_PLIES; ply++) {
+			if (boardState.hasCurrentPlayerLost()) {
+				return 1 - boardState.getCurrentPlayer();
+			}
+			
+			boardIDs.add(boardState.getBoardID());
+			if (Collections.frequency(boardIDs, boardState.getBoardID()) >= 3) {
+				return -1;
+			}
+			
+			AlphaBetaPruning solver = solvers[boardState.getCurrentPlayer()];
+			solver.setBoardState(new BoardState(boardState));
+			boardState.makeMove(solver.searchForBestMove());
+		}
+		
+		return -1;
+	}
+	
+	public static void main(String[] args) {
+		String option = args.length > 0 ? args[0] : DEFAULT_OPTION;
+		int numberOfGames = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NUMBER_OF_GAMES;
+		int moveTime = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MOVE_TIME;
+		Random random = new Random(args.length > 3 ? Long.parseLong(args[3]) : 1);
+		
+		AlphaBetaPruning withOption = new AlphaBetaPruning(new BoardState(), MAX_DEPTH, moveTime);
+		AlphaBetaPruning withoutOption = new AlphaBetaPruning(new BoardState(), MAX_DEPTH, moveTime);
+		
+		for (AlphaBetaPruning solver : new AlphaBetaPruning[] {withOption, withoutOption}) {
+			solver.setTranspositionTableSize(TRANSPOSITION_TABLE_SIZE);
+		}
+		
+		setOption(withOption, option, true);
+		setOption(withoutOption, option, false);
+		
+		int wins = 0;
+		int draws = 0;
+		int losses = 0;
+		BoardState opening = null;
+		
+		for (int game = 0; game < numberOfGames; game++) {
+			// Even games start a new opening with the option playing first, odd games swap colors.
+			if (game % 2 == 0) {
+				opening = createOpening(random);
+			}
+			
+			boolean optionPlaysFirst = game % 2 == 0;
+			AlphaBetaPruning[] solvers = optionPlaysFirst
+					? new AlphaBetaPruning[] {withOption, withoutOption}
+					: new AlphaBetaPruning[] {withoutOption, withOption};
+			
+			int winner = playGame(opening, solvers);
+			
+			if (winner == -1) {
+				draws++;
+			} else if ((winner == 0) == optionPlaysFirst) {
+				wins++;
+			} else {
+				losses++;
+			}
+			
+			System.out.println(String.format("game %3d: %s on +%d =%d -%d", game + 1, option, wins, draws, losses));
+		}
+		
+		System.out.println(String.format("%s on vs off: +%d =%d -%d, score %.1f%%", option, wins, draws, losses,
+				100.0 * (wins + 0.5 * draws) / numberOfGames));
+	}
+}
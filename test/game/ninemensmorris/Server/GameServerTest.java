@@ -0,0 +1,86 @@
+package game.ninemensmorris.Server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GameServerTest {
+	private GameServer server;
+	private HttpClient httpClient;
+	
+	@BeforeEach
+	void startServer() throws IOException {
+		server = new GameServer(0, 1, 4, 1, 16, null, null);
+		server.start();
+		httpClient = HttpClient.newHttpClient();
+	}
+	
+	@AfterEach
+	void stopServer() {
+		server.stop();
+	}
+	
+	private HttpResponse<String> post(String path) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+				.POST(HttpRequest.BodyPublishers.noBody()).build();
+		
+		return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+	
+	private String createGame() throws IOException, InterruptedException {
+		HttpResponse<String> response = post("/games");
+		
+		assertEquals(201, response.statusCode());
+		
+		return response.body().split("\n")[0].substring("game ".length());
+	}
+	
+	private HttpResponse<String> playMove(String game, String move) throws IOException, InterruptedException {
+		return post("/games/" + game + "/move?move=" + move);
+	}
+	
+	private String getBoard(String game) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/games/" + game))
+				.GET().build();
+		
+		return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+	}
+	
+	@Test
+	void rejectsMillWithoutCapture() throws Exception {
+		String game = createGame();
+		
+		for (String move : new String[] {"0", "9", "1", "10"}) {
+			assertEquals(200, playMove(game, move).statusCode());
+		}
+		
+		String board = getBoard(game);
+		
+		assertEquals(400, playMove(game, "2").statusCode());
+		assertEquals(board, getBoard(game));
+		assertEquals(200, playMove(game, "2x9").statusCode());
+	}
+	
+	@Test
+	void rejectsCaptureWithoutMill() throws Exception {
+		String game = createGame();
+		
+		for (String move : new String[] {"0", "9"}) {
+			assertEquals(200, playMove(game, move).statusCode());
+		}
+		
+		String board = getBoard(game);
+		
+		assertEquals(400, playMove(game, "1x9").statusCode());
+		assertEquals(board, getBoard(game));
+		assertEquals(200, playMove(game, "1").statusCode());
+	}
+}